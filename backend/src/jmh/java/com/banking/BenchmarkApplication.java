@@ -0,0 +1,63 @@
+package com.banking;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the banking application for benchmarks, without a web server for
+ * in-process benchmarks or on a random port for transport benchmarks.
+ */
+public class BenchmarkApplication {
+    
+    /**
+     * Start the application against a private in-memory H2 database
+     * @param databaseName The H2 database name, unique per benchmark state
+     * @param properties Additional properties in key=value form
+     * @return The running application context
+     */
+    public static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return start(WebApplicationType.NONE, databaseName, properties);
+    }
+    
+    /**
+     * Start the application with its web server on a random port, see local.server.port
+     * @param databaseName The H2 database name, unique per benchmark state
+     * @param properties Additional properties in key=value form
+     * @return The running application context
+     */
+    public static ConfigurableApplicationContext startWeb(String databaseName, String... properties) {
+        List<String> withPort = new ArrayList<>(Arrays.asList(properties));
+        withPort.add(0, "server.port=0");
+        return start(WebApplicationType.SERVLET, databaseName, withPort.toArray(new String[0]));
+    }
+    
+    private static ConfigurableApplicationContext start(WebApplicationType type, String databaseName, String... properties) {
+        List<String> defaults = new ArrayList<>(Arrays.asList(
+            "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+            "spring.jpa.show-sql=false",
+            "spring.h2.console.enabled=false",
+            "logging.level.root=WARN",
+            "logging.level.com.banking=WARN",
+            "logging.level.org.springframework.security=WARN",
+            // Benchmarks send wrong PINs to the same cards over and over; a lockout would turn them into lock checks
+            "banking.pin-lockout.enabled=false"
+        ));
+        // A repeated command line argument would be joined with the default instead of replacing it
+        for (String property : properties) {
+            String key = property.substring(0, property.indexOf('=') + 1);
+            defaults.removeIf(existing -> existing.startsWith(key));
+        }
+        defaults.addAll(Arrays.asList(properties));
+        
+        // Passed as command line arguments so they take precedence over application.properties
+        String[] args = defaults.stream().map(property -> "--" + property).toArray(String[]::new);
+        return new SpringApplicationBuilder(BankingApplication.class)
+            .web(type)
+            .run(args);
+    }
+}
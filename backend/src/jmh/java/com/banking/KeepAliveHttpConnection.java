@@ -0,0 +1,103 @@
+package com.banking;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * One keep-alive HTTP/1.1 connection posting JSON, for transport benchmarks.
+ * Each request is written in one segment so delayed acknowledgements do not
+ * stall it, which the JDK HTTP client cannot guarantee.
+ */
+public class KeepAliveHttpConnection implements Closeable {
+    
+    private final Socket socket;
+    private final DataInputStream input;
+    private final OutputStream output;
+    private final byte[] requestHead;
+    
+    /**
+     * @param port The local port of the application
+     * @param path The path every request is posted to
+     * @throws IOException If the connection cannot be opened
+     */
+    public KeepAliveHttpConnection(int port, String path) throws IOException {
+        socket = new Socket("127.0.0.1", port);
+        socket.setTcpNoDelay(true);
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        output = socket.getOutputStream();
+        requestHead = ("POST " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+            + "Content-Type: application/json\r\nAccept: application/json\r\nContent-Length: ")
+            .getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Post a JSON body and wait for the response
+     * @param body The JSON request body
+     * @return The response body
+     * @throws IOException If the connection fails or the status is not 200
+     */
+    public byte[] post(byte[] body) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream(requestHead.length + body.length + 16);
+        request.write(requestHead);
+        request.write((body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        request.write(body);
+        request.writeTo(output);
+        output.flush();
+        
+        int contentLength = -1;
+        boolean chunked = false;
+        String line = readLine();
+        if (!line.startsWith("HTTP/1.1 200")) {
+            throw new IOException("Unexpected response " + line);
+        }
+        while (!(line = readLine()).isEmpty()) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        if (!chunked) {
+            byte[] responseBody = new byte[contentLength];
+            input.readFully(responseBody);
+            return responseBody;
+        }
+        ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        int chunkLength;
+        while ((chunkLength = Integer.parseInt(readLine().trim(), 16)) > 0) {
+            byte[] chunk = new byte[chunkLength];
+            input.readFully(chunk);
+            responseBody.write(chunk);
+            readLine();
+        }
+        readLine();
+        return responseBody.toByteArray();
+    }
+    
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
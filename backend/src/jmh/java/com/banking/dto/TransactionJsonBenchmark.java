@@ -0,0 +1,52 @@
+package com.banking.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the transaction DTOs, configured like the web layer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionJsonBenchmark {
+    
+    private ObjectMapper objectMapper;
+    private byte[] requestJson;
+    private TransactionResponse response;
+    
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        requestJson = objectMapper.writeValueAsBytes(
+            new TransactionRequest("4000123456789012", "1234", new BigDecimal("100.00"), "withdraw"));
+        response = new TransactionResponse(true, "Withdrawal successful",
+            "4000123456789012", "withdraw", new BigDecimal("100.00"), new BigDecimal("900.00"));
+    }
+    
+    @Benchmark
+    public TransactionRequest readRequest() throws Exception {
+        return objectMapper.readValue(requestJson, TransactionRequest.class);
+    }
+    
+    @Benchmark
+    public byte[] writeResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
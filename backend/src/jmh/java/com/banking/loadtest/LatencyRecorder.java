@@ -0,0 +1,45 @@
+package com.banking.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects request latencies for exact percentiles at the end of a run.
+ */
+public class LatencyRecorder {
+    
+    private long[] latencies = new long[1 << 16];
+    private int count;
+    
+    /**
+     * Record one latency
+     * @param nanos The latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+    
+    /**
+     * Get latency percentiles of everything recorded so far
+     * @param percentiles The percentiles to compute, e.g. 50, 99, 99.9
+     * @return The latencies in nanoseconds, in the order requested; 0 if nothing was recorded
+     */
+    public synchronized long[] percentiles(double... percentiles) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long[] result = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (count > 0) {
+                int index = (int) Math.ceil(percentiles[i] / 100.0 * count) - 1;
+                result[i] = sorted[Math.max(0, Math.min(index, count - 1))];
+            }
+        }
+        return result;
+    }
+    
+    public synchronized int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,298 @@
+package com.banking.loadtest;
+
+import com.banking.controller.AdminController;
+import com.banking.service.ShardedLedger;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator and lost-update check against a running server.
+ *
+ * Provisions a card population through the card import endpoint, then sends
+ * withdrawals to /api/transaction and top-ups to /api/customer/topup at a fixed
+ * rate, picking cards with a Zipfian skew. Latency is measured from the time a
+ * request was scheduled to be sent, so a stalled server is not hidden by the
+ * generator slowing down. Afterwards every card balance in the database must
+ * equal its opening balance plus the successful top-ups minus the successful
+ * withdrawals; cards with a request of unknown outcome are left out.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec@loadtest -Dloadtest.args="--rate=2000 --duration=60"
+ * Options (with defaults): --url=http://localhost:8080 --cards=10000 --first-card=4100000000000000
+ * --pin=1234 --opening-balance=1000.00 --skew=1.0 --withdraw-ratio=0.5 --max-amount=50.00
+ * --rate=1000 --duration=30 --max-in-flight=1000 --seed=42 --provision=true
+ */
+public class LoadGenerator {
+    
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    
+    private final String url;
+    private final int cards;
+    private final long firstCard;
+    private final String pin;
+    private final BigDecimal openingBalance;
+    private final double skew;
+    private final double withdrawRatio;
+    private final long maxAmountCents;
+    private final int rate;
+    private final int durationSeconds;
+    private final int maxInFlight;
+    private final long seed;
+    private final boolean provision;
+    
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LongAdder successful = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    
+    private AtomicLongArray expectedDeltas;
+    private AtomicIntegerArray uncertain;
+    
+    public LoadGenerator(Map<String, String> options) {
+        url = options.getOrDefault("url", "http://localhost:8080");
+        cards = Integer.parseInt(options.getOrDefault("cards", "10000"));
+        firstCard = Long.parseLong(options.getOrDefault("first-card", "4100000000000000"));
+        pin = options.getOrDefault("pin", "1234");
+        openingBalance = new BigDecimal(options.getOrDefault("opening-balance", "1000.00"));
+        skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        withdrawRatio = Double.parseDouble(options.getOrDefault("withdraw-ratio", "0.5"));
+        maxAmountCents = toCents(new BigDecimal(options.getOrDefault("max-amount", "50.00")));
+        rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "1000"));
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        provision = Boolean.parseBoolean(options.getOrDefault("provision", "true"));
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        boolean consistent = new LoadGenerator(options).run();
+        System.exit(consistent ? 0 : 1);
+    }
+    
+    /**
+     * Provision the cards, run the load and verify the balances
+     * @return true if every verified card balance matched
+     */
+    public boolean run() throws IOException, InterruptedException {
+        if (provision) {
+            provisionCards();
+        }
+        long[] openingBalances = fetchBalances();
+        for (int i = 0; i < cards; i++) {
+            if (openingBalances[i] < 0) {
+                throw new IllegalStateException("Card " + cardNumber(i) + " does not exist; run with --provision=true");
+            }
+        }
+        
+        expectedDeltas = new AtomicLongArray(cards);
+        uncertain = new AtomicIntegerArray(cards);
+        ZipfSampler sampler = new ZipfSampler(cards, skew);
+        System.out.printf("Running %d req/s for %d s over %d cards (skew %.2f, hottest card %.1f%% of requests)%n",
+            rate, durationSeconds, cards, skew, sampler.getTopShare() * 100);
+        
+        long elapsedNanos = generateLoad(sampler);
+        report(elapsedNanos);
+        return verify(openingBalances);
+    }
+    
+    private void provisionCards() throws IOException, InterruptedException {
+        StringBuilder csv = new StringBuilder(cards * 32);
+        for (int i = 0; i < cards; i++) {
+            csv.append(cardNumber(i)).append(',').append(pin).append(',').append(openingBalance.toPlainString()).append('\n');
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/api/admin/cards/import"))
+                .header("Content-Type", "text/csv")
+                .POST(HttpRequest.BodyPublishers.ofString(csv.toString()))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Card import failed with " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode report = objectMapper.readTree(response.body());
+        System.out.printf("Provisioned cards: %d imported, %d already present%n",
+            report.get("imported").asLong(), report.get("duplicates").asLong());
+    }
+    
+    /**
+     * Read the balances of the card population from the database, following
+     * the X-Next-Cursor of the card list until every card has been listed
+     * @return The balance in cents by card index, -1 for missing cards
+     */
+    private long[] fetchBalances() throws IOException, InterruptedException {
+        long[] balances = new long[cards];
+        Arrays.fill(balances, -1);
+        String cursor = null;
+        do {
+            String page = url + "/api/admin/cards?limit=" + ShardedLedger.MAX_CARD_PAGE_SIZE + (cursor != null ? "&cursor=" + cursor : "");
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(page)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Listing cards failed with " + response.statusCode());
+            }
+            for (JsonNode card : objectMapper.readTree(response.body())) {
+                long index = Long.parseLong(card.get("cardNumber").asText()) - firstCard;
+                if (index >= 0 && index < cards) {
+                    balances[(int) index] = toCents(card.get("balance").decimalValue());
+                }
+            }
+            cursor = response.headers().firstValue(AdminController.NEXT_CURSOR_HEADER).orElse(null);
+        } while (cursor != null);
+        return balances;
+    }
+    
+    /**
+     * Send requests at the target rate for the configured duration
+     * @return The wall-clock time until the last response arrived
+     */
+    private long generateLoad(ZipfSampler sampler) throws InterruptedException {
+        Random random = new Random(seed);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long total = (long) rate * durationSeconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        
+        for (long i = 0; i < total; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            
+            int card = sampler.sample(random);
+            boolean withdraw = random.nextDouble() < withdrawRatio;
+            long cents = 1 + (long) (random.nextDouble() * maxAmountCents);
+            if (!inFlight.tryAcquire()) {
+                // The server is not keeping up; count instead of queueing without bound
+                skipped.increment();
+                continue;
+            }
+            send(card, withdraw, cents, scheduled).whenComplete((ignored, error) -> inFlight.release());
+        }
+        
+        inFlight.acquire(maxInFlight);
+        return System.nanoTime() - start;
+    }
+    
+    private CompletableFuture<Void> send(int card, boolean withdraw, long cents, long scheduled) {
+        String body = "{\"cardNumber\":\"" + cardNumber(card) + "\",\"pin\":\"" + pin + "\",\"amount\":"
+            + BigDecimal.valueOf(cents, 2).toPlainString() + ",\"type\":\"" + (withdraw ? "withdraw" : "topup") + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + (withdraw ? "/api/transaction" : "/api/customer/topup")))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .handle((response, error) -> {
+                latencies.record(System.nanoTime() - scheduled);
+                if (error != null) {
+                    // The request may or may not have been applied
+                    failed.increment();
+                    uncertain.set(card, 1);
+                } else if (response.statusCode() == 429) {
+                    throttled.increment();
+                } else if (response.statusCode() != 200) {
+                    failed.increment();
+                    uncertain.set(card, 1);
+                } else {
+                    JsonNode success = parse(response.body()).path("success");
+                    if (!success.isBoolean()) {
+                        failed.increment();
+                        uncertain.set(card, 1);
+                    } else if (success.asBoolean()) {
+                        successful.increment();
+                        expectedDeltas.addAndGet(card, withdraw ? -cents : cents);
+                    } else {
+                        declined.increment();
+                    }
+                }
+                return null;
+            });
+    }
+    
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long completed = latencies.getCount();
+        long[] p = latencies.percentiles(50, 90, 99, 99.9, 100);
+        System.out.printf("Completed %d requests in %.1f s (%.0f req/s): %d successful, %d declined, "
+                + "%d throttled (429), %d failed, %d skipped by the generator%n",
+            completed, seconds, completed / seconds, successful.sum(), declined.sum(), throttled.sum(),
+            failed.sum(), skipped.sum());
+        System.out.printf("Latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+            p[0] / 1e6, p[1] / 1e6, p[2] / 1e6, p[3] / 1e6, p[4] / 1e6);
+    }
+    
+    private boolean verify(long[] openingBalances) throws IOException, InterruptedException {
+        long[] finalBalances = fetchBalances();
+        int checked = 0;
+        int skippedCards = 0;
+        int mismatches = 0;
+        for (int i = 0; i < cards; i++) {
+            if (uncertain.get(i) != 0) {
+                skippedCards++;
+                continue;
+            }
+            checked++;
+            long expected = openingBalances[i] + expectedDeltas.get(i);
+            if (finalBalances[i] != expected) {
+                if (mismatches++ < MAX_REPORTED_MISMATCHES) {
+                    System.out.printf("MISMATCH card %s: expected %s, found %s%n", cardNumber(i),
+                        BigDecimal.valueOf(expected, 2), BigDecimal.valueOf(finalBalances[i], 2));
+                }
+            }
+        }
+        System.out.printf("Verified %d cards: %d mismatches, %d cards skipped after requests of unknown outcome%n",
+            checked, mismatches, skippedCards);
+        return mismatches == 0;
+    }
+    
+    private JsonNode parse(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            return objectMapper.missingNode();
+        }
+    }
+    
+    private String cardNumber(int index) {
+        return String.format("%016d", firstCard + index);
+    }
+    
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,44 @@
+package com.banking.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^skew.
+ * Rank 0 is the hottest; a skew of 0 samples uniformly.
+ */
+public class ZipfSampler {
+    
+    private final double[] cumulative;
+    
+    public ZipfSampler(int n, double skew) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+    
+    /**
+     * Draw a rank
+     * @param random The random source
+     * @return A rank between 0 and n-1
+     */
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+    
+    /**
+     * Get the probability of the hottest rank
+     * @return The share of draws expected to hit rank 0
+     */
+    public double getTopShare() {
+        return cumulative[0];
+    }
+}
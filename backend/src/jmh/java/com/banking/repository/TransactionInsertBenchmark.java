@@ -0,0 +1,85 @@
+package com.banking.repository;
+
+import com.banking.BenchmarkApplication;
+import com.banking.model.Transaction;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts per second into the transactions table when the audit writer saves
+ * a batch of records in one transaction, with Hibernate JDBC batching off
+ * (every INSERT is its own round trip) or on as in the prod profile. The
+ * database runs in an H2 TCP server so each statement pays a real round trip.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionInsertBenchmark {
+    
+    private static final int RECORDS = 500;
+    
+    @Param({"0", "50"})
+    public int jdbcBatchSize;
+    
+    private Server server;
+    private ConfigurableApplicationContext context;
+    private TransactionRepository repository;
+    private TransactionTemplate transactionTemplate;
+    
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0").start();
+        context = BenchmarkApplication.start("transaction-insert-benchmark",
+            "spring.datasource.url=jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:transaction-insert-benchmark",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize,
+            "spring.jpa.properties.hibernate.order_inserts=true");
+        repository = context.getBean(TransactionRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        server.stop();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public List<Transaction> saveAll() {
+        List<Transaction> records = new ArrayList<>(RECORDS);
+        BigDecimal amount = new BigDecimal("10.00");
+        for (int i = 0; i < RECORDS; i++) {
+            Transaction transaction = new Transaction("4000123456789012", Transaction.TransactionType.WITHDRAW, amount);
+            transaction.setStatus(Transaction.TransactionStatus.SUCCESS);
+            transaction.setMessage("Withdrawal successful");
+            transaction.setBalanceAfter(amount);
+            records.add(transaction);
+        }
+        return transactionTemplate.execute(status -> repository.saveAll(records));
+    }
+}
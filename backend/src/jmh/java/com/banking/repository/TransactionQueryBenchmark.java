@@ -0,0 +1,119 @@
+package com.banking.repository;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latency of the customer-history and status queries on a populated ledger,
+ * with the schema migrated to V1 (no indexes) or V2 (composite indexes).
+ * The ledger is a file-backed H2 database under target/ so 10M rows fit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionQueryBenchmark {
+    
+    private static final int CARD_COUNT = 100_000;
+    private static final int PAGE_SIZE = 50;
+    
+    @Param({"1000000", "10000000"})
+    public int rows;
+    
+    @Param({"1", "2"})
+    public String schemaVersion;
+    
+    private Path databaseDirectory;
+    private Connection connection;
+    private PreparedStatement byCard;
+    private PreparedStatement byStatus;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        databaseDirectory = Files.createTempDirectory(Paths.get("target"), "query-benchmark");
+        String url = "jdbc:h2:file:" + databaseDirectory.toAbsolutePath().resolve("ledger");
+        
+        Flyway.configure()
+            .dataSource(url, "sa", "")
+            .locations("classpath:db/migration")
+            .target(schemaVersion)
+            .load()
+            .migrate();
+        
+        connection = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                "INSERT INTO transactions (card_number, type, amount, timestamp, status, message, balance_after) " +
+                "SELECT CONCAT('4', LPAD(CAST(MOD(X, " + CARD_COUNT + ") AS VARCHAR), 15, '0')), " +
+                "CASEWHEN(MOD(X, 2) = 0, 'WITHDRAW', 'TOPUP'), 10.00, " +
+                "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), " +
+                "CASEWHEN(MOD(X, 10) = 0, 'DECLINED', 'SUCCESS'), 'Benchmark row', 100.00 " +
+                "FROM SYSTEM_RANGE(1, " + rows + ")");
+            statement.execute("ANALYZE");
+        }
+        
+        byCard = connection.prepareStatement(
+            "SELECT * FROM transactions WHERE card_number = ? ORDER BY timestamp DESC LIMIT " + PAGE_SIZE);
+        byStatus = connection.prepareStatement(
+            "SELECT * FROM transactions WHERE status = ? ORDER BY timestamp DESC LIMIT " + PAGE_SIZE);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        try (Stream<Path> files = Files.walk(databaseDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    public int historyByCard() throws SQLException {
+        String cardNumber = "4" + String.format("%015d", ThreadLocalRandom.current().nextInt(CARD_COUNT));
+        byCard.setString(1, cardNumber);
+        return count(byCard);
+    }
+    
+    @Benchmark
+    public int latestByStatus() throws SQLException {
+        byStatus.setString(1, "DECLINED");
+        return count(byStatus);
+    }
+    
+    private static int count(PreparedStatement statement) throws SQLException {
+        int count = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
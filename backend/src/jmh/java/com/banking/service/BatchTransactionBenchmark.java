@@ -0,0 +1,85 @@
+package com.banking.service;
+
+import com.banking.BenchmarkApplication;
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a 1000-transaction batch submitted at once versus the same
+ * transactions submitted one request at a time. Transactions are spread over
+ * a number of cards and alternate withdrawals and top-ups so balances stay flat.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchTransactionBenchmark {
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    @Param({"10", "1000"})
+    public int cards;
+    
+    private ConfigurableApplicationContext context;
+    private TransactionGatewayService gateway;
+    private BatchTransactionService batchService;
+    private List<TransactionRequest> requests;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("batch-transaction-benchmark");
+        gateway = context.getBean(TransactionGatewayService.class);
+        batchService = context.getBean(BatchTransactionService.class);
+        String[] cardNumbers = ProcessorBenchmarkSupport.createCards(context, cards);
+        
+        BigDecimal amount = new BigDecimal("1.00");
+        requests = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String cardNumber = cardNumbers[(i / 2) % cardNumbers.length];
+            String type = i % 2 == 0 ? "withdraw" : "topup";
+            requests.add(new TransactionRequest(cardNumber, ProcessorBenchmarkSupport.PIN, amount, type));
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<TransactionResponse> batch() {
+        return batchService.processBatch(requests);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void singleRequests(Blackhole blackhole) {
+        for (TransactionRequest request : requests) {
+            blackhole.consume(gateway.processTransaction(request));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.banking.service;
+
+import com.banking.BenchmarkApplication;
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent throughput with and without card lanes, for a single hot card and
+ * for requests spread uniformly over many cards. Without lanes the hot-card
+ * workload loses updates; the numbers only compare the cost of each path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CardLaneBenchmark {
+    
+    private static final int CARD_COUNT = 1000;
+    
+    @Param({"true", "false"})
+    public boolean lanesEnabled;
+    
+    @Param({"hot", "uniform"})
+    public String workload;
+    
+    private ConfigurableApplicationContext context;
+    private TransactionGatewayService gateway;
+    private String[] cardNumbers;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("card-lane-benchmark-" + lanesEnabled + "-" + workload,
+            "banking.lanes.enabled=" + lanesEnabled);
+        gateway = context.getBean(TransactionGatewayService.class);
+        cardNumbers = ProcessorBenchmarkSupport.createCards(context, CARD_COUNT);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public TransactionResponse processTransaction() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String cardNumber = "hot".equals(workload) ? cardNumbers[0] : cardNumbers[random.nextInt(CARD_COUNT)];
+        String type = random.nextBoolean() ? "withdraw" : "topup";
+        return gateway.processTransaction(
+            new TransactionRequest(cardNumber, ProcessorBenchmarkSupport.PIN, BigDecimal.ONE, type));
+    }
+}
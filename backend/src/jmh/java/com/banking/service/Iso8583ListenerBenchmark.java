@@ -0,0 +1,166 @@
+package com.banking.service;
+
+import com.banking.BenchmarkApplication;
+import com.banking.KeepAliveHttpConnection;
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.util.Iso8583Codec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminal traffic over the ISO 8583 listener compared with JSON on the REST endpoint.
+ *
+ * Each benchmark thread is one terminal with its own persistent connection and
+ * one request outstanding at a time. rest-json posts to /api/transaction,
+ * iso8583 sends the same transaction as a 0200 message; both run on the
+ * bounded transaction pool and through the same gateway path. Every operation
+ * returns the ISO response code, mapped from the JSON response for rest-json.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class Iso8583ListenerBenchmark {
+    
+    private static final int CARDS = 64;
+    private static final long AMOUNT_MINOR = 100;
+    private static final int WITHDRAWAL = 10000;
+    private static final int DEPOSIT = 210000;
+    
+    @Param({"rest-json", "iso8583"})
+    public String transport;
+    
+    private ConfigurableApplicationContext context;
+    private String[] cardNumbers;
+    private ObjectMapper objectMapper;
+    private int httpPort;
+    private int isoPort;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.startWeb("iso8583-listener-benchmark",
+            "banking.iso8583.enabled=true",
+            "banking.iso8583.port=0",
+            "banking.iso8583.bind-address=127.0.0.1");
+        cardNumbers = ProcessorBenchmarkSupport.createCards(context, CARDS);
+        objectMapper = context.getBean(ObjectMapper.class);
+        httpPort = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        isoPort = context.getBean(Iso8583Listener.class).getPort();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public String withdrawThenTopup(Terminal terminal) throws IOException {
+        String cardNumber = randomCard();
+        terminal.send(cardNumber, ProcessorBenchmarkSupport.PIN, WITHDRAWAL);
+        return terminal.send(cardNumber, ProcessorBenchmarkSupport.PIN, DEPOSIT);
+    }
+    
+    @Benchmark
+    public String invalidPin(Terminal terminal) throws IOException {
+        return terminal.send(randomCard(), "0000", WITHDRAWAL);
+    }
+    
+    private String randomCard() {
+        return cardNumbers[ThreadLocalRandom.current().nextInt(cardNumbers.length)];
+    }
+    
+    /**
+     * One terminal connection per thread
+     */
+    @State(Scope.Thread)
+    public static class Terminal {
+        
+        private Iso8583ListenerBenchmark benchmark;
+        private KeepAliveHttpConnection http;
+        private SocketChannel channel;
+        private final ByteBuffer request = ByteBuffer.allocateDirect(Iso8583Codec.MAX_MESSAGE_BYTES);
+        private final ByteBuffer response = ByteBuffer.allocateDirect(Iso8583Codec.MAX_MESSAGE_BYTES);
+        private int stan;
+        
+        @Setup(Level.Trial)
+        public void open(Iso8583ListenerBenchmark benchmark) throws IOException {
+            this.benchmark = benchmark;
+            if ("iso8583".equals(benchmark.transport)) {
+                channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", benchmark.isoPort));
+                channel.socket().setTcpNoDelay(true);
+            } else {
+                http = new KeepAliveHttpConnection(benchmark.httpPort, "/api/transaction");
+            }
+        }
+        
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+            if (http != null) {
+                http.close();
+            }
+        }
+        
+        String send(String cardNumber, String pin, int processingCode) throws IOException {
+            if (http != null) {
+                String type = processingCode == DEPOSIT ? "topup" : "withdraw";
+                TransactionRequest body = new TransactionRequest(cardNumber, pin, BigDecimal.valueOf(AMOUNT_MINOR, 2), type);
+                byte[] json = http.post(benchmark.objectMapper.writeValueAsBytes(body));
+                return Iso8583Codec.responseCode(benchmark.objectMapper.readValue(json, TransactionResponse.class));
+            }
+            
+            request.clear();
+            stan = (stan + 1) % 1_000_000;
+            Iso8583Codec.encodeRequest(request, cardNumber, pin, processingCode, AMOUNT_MINOR, stan);
+            request.flip();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            
+            response.clear().limit(Iso8583Codec.LENGTH_HEADER_BYTES);
+            readFully();
+            int length = response.getShort(0) & 0xFFFF;
+            response.clear().limit(length);
+            readFully();
+            response.flip();
+            return Iso8583Codec.readResponseCode(response);
+        }
+        
+        private void readFully() throws IOException {
+            while (response.hasRemaining()) {
+                if (channel.read(response) < 0) {
+                    throw new EOFException("Listener closed the connection");
+                }
+            }
+        }
+    }
+}
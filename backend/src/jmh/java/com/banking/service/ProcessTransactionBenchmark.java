@@ -0,0 +1,67 @@
+package com.banking.service;
+
+import com.banking.BenchmarkApplication;
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full gateway and processor path for one request against an embedded H2 database.
+ * Each invocation alternates a withdrawal and a top-up so the balance stays flat.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessTransactionBenchmark {
+    
+    private ConfigurableApplicationContext context;
+    private TransactionGatewayService gateway;
+    private TransactionRequest withdrawal;
+    private TransactionRequest topup;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("process-transaction-benchmark");
+        gateway = context.getBean(TransactionGatewayService.class);
+        String cardNumber = ProcessorBenchmarkSupport.createCards(context, 1)[0];
+        
+        BigDecimal amount = new BigDecimal("1.00");
+        withdrawal = new TransactionRequest(cardNumber, ProcessorBenchmarkSupport.PIN, amount, "withdraw");
+        topup = new TransactionRequest(cardNumber, ProcessorBenchmarkSupport.PIN, amount, "topup");
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public TransactionResponse withdrawThenTopup() {
+        gateway.processTransaction(withdrawal);
+        return gateway.processTransaction(topup);
+    }
+    
+    @Benchmark
+    public TransactionResponse invalidPin() {
+        return gateway.processTransaction(new TransactionRequest(
+            withdrawal.getCardNumber(), "0000", withdrawal.getAmount(), "withdraw"));
+    }
+}
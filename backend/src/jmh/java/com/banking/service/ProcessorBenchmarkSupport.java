@@ -0,0 +1,47 @@
+package com.banking.service;
+
+import com.banking.event.CardsImportedEvent;
+import com.banking.model.Card;
+import com.banking.repository.CardRepository;
+import com.banking.util.PinHasher;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Card population shared by the processor benchmarks.
+ */
+final class ProcessorBenchmarkSupport {
+    
+    static final String PIN = "1234";
+    
+    static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+    
+    private ProcessorBenchmarkSupport() {}
+    
+    /**
+     * Create benchmark cards in the 4999 range and announce them like an import,
+     * so the gateway's card number filter and balance view know them
+     * @param context The running application
+     * @param count The number of cards to create
+     * @return The created card numbers
+     */
+    static String[] createCards(ConfigurableApplicationContext context, int count) {
+        byte[] pinHash = PinHasher.hashPin(PIN);
+        List<Card> cards = new ArrayList<>(count);
+        Map<String, BigDecimal> balances = new HashMap<>();
+        String[] cardNumbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            cardNumbers[i] = String.format("4999%012d", i);
+            cards.add(new Card(cardNumbers[i], pinHash, INITIAL_BALANCE));
+            balances.put(cardNumbers[i], INITIAL_BALANCE);
+        }
+        context.getBean(CardRepository.class).saveAll(cards);
+        context.publishEvent(new CardsImportedEvent(balances));
+        return cardNumbers;
+    }
+}
@@ -0,0 +1,137 @@
+package com.banking.service;
+
+import com.banking.BenchmarkApplication;
+import com.banking.KeepAliveHttpConnection;
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway to processor hop over JSON on HTTP compared with the binary link.
+ *
+ * A processor node runs with its web server and RPC server on random ports.
+ * http-json posts each request to /api/process on a keep-alive connection per
+ * thread; binary sends it through a ProcessorRpcClient with persistent, pipelined
+ * connections. Both reach the same processing path; the HTTP side additionally
+ * passes the node's gateway checks, which cost a few microseconds. invalidPin
+ * makes no balance update, so its time is mostly the transport.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ProcessorTransportBenchmark {
+    
+    private static final int CARDS = 64;
+    
+    @Param({"http-json", "binary"})
+    public String transport;
+    
+    private ConfigurableApplicationContext context;
+    private String[] cardNumbers;
+    private ObjectMapper objectMapper;
+    private int httpPort;
+    private ProcessorRpcClient rpcClient;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.startWeb("processor-transport-benchmark",
+            "banking.processor.rpc.enabled=true",
+            "banking.processor.rpc.port=0",
+            "banking.processor.rpc.bind-address=127.0.0.1");
+        cardNumbers = ProcessorBenchmarkSupport.createCards(context, CARDS);
+        
+        objectMapper = context.getBean(ObjectMapper.class);
+        httpPort = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        
+        int rpcPort = context.getBean(ProcessorRpcServer.class).getPort();
+        rpcClient = new ProcessorRpcClient(Collections.singletonList(new InetSocketAddress("127.0.0.1", rpcPort)), 2, 5000, 1000);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rpcClient.close();
+        context.close();
+    }
+    
+    @Benchmark
+    public TransactionResponse withdrawThenTopup(HttpJsonConnection connection) {
+        String cardNumber = randomCard();
+        BigDecimal amount = new BigDecimal("1.00");
+        send(connection, new TransactionRequest(cardNumber, ProcessorBenchmarkSupport.PIN, amount, "withdraw"));
+        return send(connection, new TransactionRequest(cardNumber, ProcessorBenchmarkSupport.PIN, amount, "topup"));
+    }
+    
+    @Benchmark
+    public TransactionResponse invalidPin(HttpJsonConnection connection) {
+        return send(connection, new TransactionRequest(randomCard(), "0000", new BigDecimal("1.00"), "withdraw"));
+    }
+    
+    private String randomCard() {
+        return cardNumbers[ThreadLocalRandom.current().nextInt(cardNumbers.length)];
+    }
+    
+    private TransactionResponse send(HttpJsonConnection connection, TransactionRequest request) {
+        if ("binary".equals(transport)) {
+            return rpcClient.process(request);
+        }
+        try {
+            return objectMapper.readValue(connection.post(objectMapper.writeValueAsBytes(request)), TransactionResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * One keep-alive HTTP/1.1 connection to /api/process per thread
+     */
+    @State(Scope.Thread)
+    public static class HttpJsonConnection {
+        
+        private KeepAliveHttpConnection connection;
+        
+        @Setup(Level.Trial)
+        public void open(ProcessorTransportBenchmark benchmark) throws IOException {
+            if ("http-json".equals(benchmark.transport)) {
+                connection = new KeepAliveHttpConnection(benchmark.httpPort, "/api/process");
+            }
+        }
+        
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        
+        byte[] post(byte[] body) throws IOException {
+            return connection.post(body);
+        }
+    }
+}
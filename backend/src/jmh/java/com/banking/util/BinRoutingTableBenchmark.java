@@ -0,0 +1,66 @@
+package com.banking.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Card number validation and BIN lookup, compared with the regex check it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinRoutingTableBenchmark {
+    
+    @Param({"false", "true"})
+    public boolean luhnCheck;
+    
+    private BinRoutingTable table;
+    private String routedCardNumber = "4111111111111111";
+    private String invalidCardNumber = "4000-1234-5678-9012";
+    
+    @Setup
+    public void setup() {
+        table = new BinRoutingTable.Builder()
+            .luhnCheck(luhnCheck)
+            .add("4", route("4", BinRoutingTable.Action.PROCESS, null))
+            .add("510000-559999", route("510000-559999", BinRoutingTable.Action.DECLINE, "Mastercard not supported"))
+            .add("411111", route("411111", BinRoutingTable.Action.PROCESS, null))
+            .defaultRoute(route("*", BinRoutingTable.Action.DECLINE, "Card range not supported"))
+            .invalidRoute(route("invalid", BinRoutingTable.Action.INVALID, "Invalid card number format"))
+            .build();
+    }
+    
+    @Benchmark
+    public BinRoutingTable.Route routeValid() {
+        return table.route(routedCardNumber);
+    }
+    
+    @Benchmark
+    public BinRoutingTable.Route routeInvalid() {
+        return table.route(invalidCardNumber);
+    }
+    
+    @Benchmark
+    public boolean regexBaseline() {
+        return routedCardNumber.matches("^\\d{16}$") && routedCardNumber.startsWith("4");
+    }
+    
+    private static BinRoutingTable.Route route(String range, BinRoutingTable.Action action, String target) {
+        return new BinRoutingTable.Route(range, action, target, new LongAdder());
+    }
+}
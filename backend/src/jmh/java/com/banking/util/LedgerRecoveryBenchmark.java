@@ -0,0 +1,83 @@
+package com.banking.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to recover the card balances from a snapshot plus a journal tail
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LedgerRecoveryBenchmark {
+    
+    private static final long FIRST_CARD = 4000000000000000L;
+    
+    @Param({"1000000", "10000000"})
+    private int cards;
+    
+    @Param({"1000000"})
+    private int journalTail;
+    
+    private Path directory;
+    
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createDirectories(Paths.get("target", "ledger-benchmark"))
+            .resolve(cards + "-" + journalTail);
+        deleteDirectory();
+        
+        LedgerSnapshot.write(directory, 0, writer -> {
+            for (int i = 0; i < cards; i++) {
+                writer.write(FIRST_CARD + i, 100000);
+            }
+        });
+        Random random = new Random(42);
+        try (LedgerJournal journal = LedgerJournal.open(directory, 1, 64 * 1024 * 1024)) {
+            for (int i = 0; i < journalTail; i++) {
+                journal.append(FIRST_CARD + random.nextInt(cards), random.nextInt(1000000));
+            }
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        deleteDirectory();
+    }
+    
+    @Benchmark
+    public LedgerState recover() throws IOException {
+        return LedgerState.recover(directory);
+    }
+    
+    private void deleteDirectory() throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
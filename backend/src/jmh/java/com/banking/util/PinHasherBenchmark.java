@@ -0,0 +1,45 @@
+package com.banking.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PinHasherBenchmark {
+    
+    private byte[] storedHash;
+    
+    @Setup
+    public void setup() {
+        storedHash = PinHasher.hashPin("1234");
+    }
+    
+    @Benchmark
+    public byte[] hashPin() {
+        return PinHasher.hashPin("1234");
+    }
+    
+    @Benchmark
+    public boolean verifyPinMatch() {
+        return PinHasher.verifyPin("1234", storedHash);
+    }
+    
+    @Benchmark
+    public boolean verifyPinMismatch() {
+        return PinHasher.verifyPin("4321", storedHash);
+    }
+}
@@ -0,0 +1,64 @@
+package com.banking.config;
+
+import com.banking.service.CardImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line card import.
+ *
+ * --import-cards=cards.csv imports the file once the application has started;
+ * with --import-only the application exits afterwards, with status 1 if any
+ * line was rejected.
+ */
+@Component
+@Order(3)
+public class CardImportRunner implements ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CardImportRunner.class);
+    
+    private static final String IMPORT_OPTION = "import-cards";
+    private static final String IMPORT_ONLY_OPTION = "import-only";
+    
+    @Autowired
+    private CardImportService cardImportService;
+    
+    @Autowired
+    private ConfigurableApplicationContext context;
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> files = args.getOptionValues(IMPORT_OPTION);
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+        
+        long rejected = 0;
+        for (String file : files) {
+            logger.info("Importing cards from {}", file);
+            try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                CardImportService.ImportReport report = cardImportService.importCards(reader);
+                report.getErrors().forEach(error -> logger.warn("{}: {}", file, error));
+                rejected += report.getRejected();
+            }
+        }
+        
+        if (args.containsOption(IMPORT_ONLY_OPTION)) {
+            int status = rejected == 0 ? 0 : 1;
+            System.exit(SpringApplication.exit(context, () -> status));
+        }
+    }
+}
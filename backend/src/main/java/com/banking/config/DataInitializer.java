@@ -1,18 +1,25 @@
 package com.banking.config;
 
+import com.banking.event.CardsImportedEvent;
 import com.banking.model.Card;
 import com.banking.model.User;
 import com.banking.repository.CardRepository;
 import com.banking.repository.UserRepository;
+import com.banking.service.ShardRouter;
+import com.banking.service.ShardedLedger;
 import com.banking.util.PinHasher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 @Component
+@Order(1)
 public class DataInitializer implements CommandLineRunner {
     
     @Autowired
@@ -21,9 +28,18 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private ShardedLedger shardedLedger;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Override
     public void run(String... args) throws Exception {
         // Initialize test cards
@@ -35,27 +51,27 @@ public class DataInitializer implements CommandLineRunner {
     
     private void initializeCards() {
         // Only create cards if they don't exist
-        if (cardRepository.count() == 0) {
+        if (shardedLedger.countCards() == 0) {
             // Card 1: Valid Visa card (starts with 4)
             Card card1 = new Card();
             card1.setCardNumber("4000123456789012");
             card1.setPinHash(PinHasher.hashPin("1234"));
             card1.setBalance(new BigDecimal("1000.00"));
-            cardRepository.save(card1);
+            saveCard(card1);
             
             // Card 2: Valid Visa card (starts with 4)
             Card card2 = new Card();
             card2.setCardNumber("4000123456789013");
             card2.setPinHash(PinHasher.hashPin("5678"));
             card2.setBalance(new BigDecimal("500.00"));
-            cardRepository.save(card2);
+            saveCard(card2);
             
             // Card 3: Unsupported card range (starts with 5)
             Card card3 = new Card();
             card3.setCardNumber("5000123456789012");
             card3.setPinHash(PinHasher.hashPin("9999"));
             card3.setBalance(new BigDecimal("2000.00"));
-            cardRepository.save(card3);
+            saveCard(card3);
             
             System.out.println("Test cards initialized:");
             System.out.println("- Card: 4000123456789012, PIN: 1234, Balance: 1000.00");
@@ -64,6 +80,11 @@ public class DataInitializer implements CommandLineRunner {
         }
     }
     
+    private void saveCard(Card card) {
+        shardRouter.onCard(card.getCardNumber(), () -> cardRepository.save(card));
+        eventPublisher.publishEvent(new CardsImportedEvent(Map.of(card.getCardNumber(), card.getBalance())));
+    }
+    
     private void initializeUsers() {
         // Only create users if they don't exist
         if (userRepository.count() == 0) {
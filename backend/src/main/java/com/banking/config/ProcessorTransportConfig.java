@@ -0,0 +1,58 @@
+package com.banking.config;
+
+import com.banking.event.BalanceChangedEvent;
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.service.BalanceReadModel;
+import com.banking.service.ProcessorRpcClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Remote processor nodes, enabled with banking.processor.transport=binary.
+ *
+ * The gateway then sends everything that passed its checks to the nodes listed
+ * in banking.processor.nodes over the binary link instead of processing it in
+ * this process. The nodes run with banking.processor.rpc.enabled=true and use
+ * the same databases as the gateway. Balances and audit records committed by
+ * the nodes are applied to the gateway's balance read model and published as
+ * TransactionsRecordedEvent for its history, statistics and live feed. Balances
+ * go to the read model directly rather than as BalanceChangedEvent, which the
+ * ledger of the node that committed them has already journaled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "banking.processor.transport", havingValue = "binary")
+public class ProcessorTransportConfig {
+    
+    @Value("${banking.processor.nodes}")
+    private String nodes;
+    
+    @Value("${banking.processor.connections-per-node:2}")
+    private int connectionsPerNode;
+    
+    @Value("${banking.processor.timeout-ms:5000}")
+    private long timeoutMs;
+    
+    @Value("${banking.processor.connect-timeout-ms:1000}")
+    private int connectTimeoutMs;
+    
+    @Bean(destroyMethod = "close")
+    @Primary
+    public ProcessorRpcClient processorRpcClient(BalanceReadModel balanceReadModel, ApplicationEventPublisher eventPublisher) {
+        return new ProcessorRpcClient(ProcessorRpcClient.parseNodes(nodes), connectionsPerNode, timeoutMs, connectTimeoutMs,
+            new ProcessorRpcClient.CommitListener() {
+                @Override
+                public void onBalanceChanged(BalanceChangedEvent event) {
+                    balanceReadModel.onBalanceChanged(event);
+                }
+                
+                @Override
+                public void onTransactionsRecorded(TransactionsRecordedEvent event) {
+                    eventPublisher.publishEvent(event);
+                }
+            });
+    }
+}
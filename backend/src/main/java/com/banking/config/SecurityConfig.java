@@ -1,5 +1,6 @@
 package com.banking.config;
 
+import com.banking.controller.AdminController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -25,9 +26,11 @@ public class SecurityConfig {
             .authorizeRequests()
                 .antMatchers("/h2-console/**").permitAll()
                 .antMatchers("/api/transaction").permitAll()
+                .antMatchers("/api/transactions/batch").permitAll()
                 .antMatchers("/api/process").permitAll()
                 .antMatchers("/api/customer/**").permitAll() // Allow customer endpoints without auth
                 .antMatchers("/api/admin/**").permitAll() // Allow admin endpoints without auth
+                .antMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                 .anyRequest().authenticated()
             .and()
             .headers().frameOptions().disable(); // For H2 console
@@ -46,6 +49,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(AdminController.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
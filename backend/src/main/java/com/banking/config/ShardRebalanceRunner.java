@@ -0,0 +1,41 @@
+package com.banking.config;
+
+import com.banking.service.ShardRebalanceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command line shard rebalance.
+ *
+ * --rebalance-shards moves every card and its transactions to the shard that
+ * owns it under the configured banking.sharding.shards, then exits. When the
+ * shard count shrinks, banking.sharding.previous-shards names the old count
+ * so the shards being drained are scanned as well.
+ */
+@Component
+@Order(0)
+public class ShardRebalanceRunner implements ApplicationRunner {
+    
+    private static final String REBALANCE_OPTION = "rebalance-shards";
+    
+    @Autowired
+    private ShardRebalanceService shardRebalanceService;
+    
+    @Autowired
+    private ConfigurableApplicationContext context;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(REBALANCE_OPTION)) {
+            return;
+        }
+        
+        shardRebalanceService.rebalance();
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
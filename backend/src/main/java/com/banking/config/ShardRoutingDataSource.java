@@ -0,0 +1,18 @@
+package com.banking.config;
+
+import com.banking.service.ShardRouter;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * DataSource that hands out connections of the shard selected by ShardRouter
+ * on the current thread. Work without a selected shard goes to shard 0, which
+ * also holds the tables that are not sharded, such as users and idempotency keys.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardRouter.currentShard();
+        return shard != null ? shard : 0;
+    }
+}
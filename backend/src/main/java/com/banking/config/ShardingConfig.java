@@ -0,0 +1,96 @@
+package com.banking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Database shards, enabled with banking.sharding.shards greater than 1.
+ *
+ * One connection pool is created per shard from banking.sharding.url-template,
+ * with {shard} replaced by the shard index, and the application uses a routing
+ * DataSource on top of them. Every shard gets the full schema; Flyway runs the
+ * migrations once per shard with the shard index as the "shard" placeholder.
+ * During a rebalance banking.sharding.previous-shards may name more shards than
+ * are in use, so the shards being drained stay reachable.
+ */
+@Configuration
+@ConditionalOnExpression("${banking.sharding.shards:1} > 1 or ${banking.sharding.previous-shards:0} > 1")
+public class ShardingConfig {
+    
+    public static final String SHARD_PLACEHOLDER = "shard";
+    
+    @Value("${banking.sharding.shards:1}")
+    private int shardCount;
+    
+    @Value("${banking.sharding.previous-shards:0}")
+    private int previousShardCount;
+    
+    @Value("${banking.sharding.url-template:jdbc:h2:mem:bankingdb-shard{shard}}")
+    private String urlTemplate;
+    
+    @Value("${banking.sharding.pool-size:10}")
+    private int poolSize;
+    
+    private final Map<Object, Object> shards = new HashMap<>();
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties) {
+        int count = Math.max(shardCount, previousShardCount);
+        for (int shard = 0; shard < count; shard++) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(urlTemplate.replace("{" + SHARD_PLACEHOLDER + "}", String.valueOf(shard)))
+                .build();
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setMaximumPoolSize(poolSize);
+            shards.put(shard, dataSource);
+        }
+        
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(shards);
+        routing.setDefaultTargetDataSource(shards.get(0));
+        // An unknown shard index is a bug, never fall back to shard 0 for it
+        routing.setLenientFallback(false);
+        return routing;
+    }
+    
+    @PreDestroy
+    public void closeShards() {
+        for (Object dataSource : shards.values()) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+    
+    /**
+     * Migrate every shard instead of only the default one
+     * @return The migration strategy
+     */
+    @Bean
+    public FlywayMigrationStrategy shardedMigrationStrategy() {
+        return flyway -> {
+            for (Map.Entry<Object, Object> shard : shards.entrySet()) {
+                Map<String, String> placeholders = new HashMap<>(flyway.getConfiguration().getPlaceholders());
+                placeholders.put(SHARD_PLACEHOLDER, String.valueOf(shard.getKey()));
+                Flyway.configure()
+                    .configuration(flyway.getConfiguration())
+                    .dataSource((DataSource) shard.getValue())
+                    .placeholders(placeholders)
+                    .load()
+                    .migrate();
+            }
+        };
+    }
+}
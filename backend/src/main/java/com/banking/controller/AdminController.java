@@ -1,13 +1,43 @@
 package com.banking.controller;
 
+import com.banking.dto.CardPage;
+import com.banking.dto.TransactionFilter;
+import com.banking.dto.TransactionPage;
 import com.banking.model.Card;
 import com.banking.model.Transaction;
-import com.banking.repository.CardRepository;
-import com.banking.repository.TransactionRepository;
+import com.banking.service.BinRoutingService;
+import com.banking.service.CardCache;
+import com.banking.service.CardImportService;
+import com.banking.service.CardNumberFilter;
+import com.banking.service.PinAttemptTracker;
+import com.banking.service.RecentTransactionHistory;
+import com.banking.service.ShardedLedger;
+import com.banking.service.TransactionAuditWriter;
+import com.banking.service.TransactionFeed;
+import com.banking.service.TransactionQueryService;
+import com.banking.service.TransactionStatsAggregator;
+import com.banking.util.BinRoutingTable;
+import com.banking.util.TransactionCsv;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -15,41 +45,386 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:3000")
 public class AdminController {
     
+    /**
+     * Header carrying the cursor of the rows after a capped list
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
+    // Default size of the list endpoints kept for the dashboard; X-Next-Cursor continues beyond it
+    private static final int LEGACY_LIST_LIMIT = 500;
+    
+    @Autowired
+    private ShardedLedger shardedLedger;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private TransactionAuditWriter transactionAuditWriter;
+    
+    @Autowired
+    private CardCache cardCache;
+    
+    @Autowired
+    private BinRoutingService binRoutingService;
+    
     @Autowired
-    private TransactionRepository transactionRepository;
+    private RecentTransactionHistory recentTransactionHistory;
     
     @Autowired
-    private CardRepository cardRepository;
+    private TransactionStatsAggregator transactionStatsAggregator;
+    
+    @Autowired
+    private TransactionFeed transactionFeed;
+    
+    @Autowired
+    private CardImportService cardImportService;
+    
+    @Autowired
+    private PinAttemptTracker pinAttemptTracker;
+    
+    @Autowired
+    private CardNumberFilter cardNumberFilter;
     
     /**
-     * Get all transactions (Super Admin view)
-     * @return List of all transactions
+     * Get the most recent transactions (Super Admin view)
+     * @param limit The maximum number of transactions to return, at most the page size limit
+     * @return List of the most recent transactions, newest first; X-Next-Cursor is set when there are more
      */
     @GetMapping("/transactions")
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
-        List<Transaction> transactions = transactionRepository.findAll();
-        return ResponseEntity.ok(transactions);
+    public ResponseEntity<List<Transaction>> getAllTransactions(
+            @RequestParam(defaultValue = "" + LEGACY_LIST_LIMIT) int limit) {
+        return listResponse(shardedLedger.findPage(new TransactionFilter(), null, limit));
+    }
+    
+    /**
+     * Get one page of transactions using a keyset cursor
+     * @param status Optional status filter
+     * @param type Optional type filter
+     * @param from Optional inclusive lower timestamp bound
+     * @param to Optional exclusive upper timestamp bound
+     * @param cursor The cursor returned with the previous page
+     * @param limit The page size
+     * @return The page of transactions and the cursor of the next page
+     */
+    @GetMapping("/transactions/page")
+    public ResponseEntity<?> getTransactionPage(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + TransactionQueryService.DEFAULT_PAGE_SIZE) int limit) {
+        try {
+            TransactionFilter filter = createFilter(status, type, from, to);
+            return ResponseEntity.ok(shardedLedger.findPage(filter, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Stream newly recorded transactions as Server-Sent Events
+     * @param lastEventId The id of the last event received, sent by reconnecting clients
+     * @return The event stream, or 503 when the subscriber limit is reached
+     */
+    @GetMapping(path = "/transactions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTransactions(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            return ResponseEntity.ok(transactionFeed.subscribe(lastEventId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
+    /**
+     * Get live feed statistics (subscribers and subscriber lag)
+     * @return Live feed statistics
+     */
+    @GetMapping("/transactions/stream/stats")
+    public ResponseEntity<TransactionFeed.FeedStats> getFeedStats() {
+        return ResponseEntity.ok(transactionFeed.getStats());
+    }
+    
+    /**
+     * Export transactions as NDJSON or CSV, streamed row by row
+     * @param format Either "ndjson" or "csv"
+     * @param status Optional status filter
+     * @param type Optional type filter
+     * @param from Optional inclusive lower timestamp bound
+     * @param to Optional exclusive upper timestamp bound
+     * @param response The response to stream into
+     */
+    @GetMapping("/transactions/export")
+    public void exportTransactions(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) throws IOException {
+        TransactionFilter filter;
+        try {
+            filter = createFilter(status, type, from, to);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        
+        boolean csv = "csv".equalsIgnoreCase(format);
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"transactions." + (csv ? "csv" : "ndjson") + "\"");
+        
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(TransactionCsv.HEADER);
+        }
+        shardedLedger.streamTransactions(filter, transaction -> {
+            try {
+                writer.write(csv ? TransactionCsv.toLine(transaction) : objectMapper.writeValueAsString(transaction));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
     }
     
     /**
-     * Get all cards (Super Admin view)
-     * @return List of all cards
+     * Get cards in id order (Super Admin view)
+     * @param cursor The X-Next-Cursor of the previous call, omitted for the first cards
+     * @param limit The maximum number of cards to return, at most the page size limit
+     * @return List of cards ordered by id; X-Next-Cursor is set when there are more
      */
     @GetMapping("/cards")
-    public ResponseEntity<List<Card>> getAllCards() {
-        List<Card> cards = cardRepository.findAll();
-        return ResponseEntity.ok(cards);
+    public ResponseEntity<List<Card>> getAllCards(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "" + LEGACY_LIST_LIMIT) int limit) {
+        CardPage page = shardedLedger.findCardPage(cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+    
+    /**
+     * Count the cards of every shard
+     * @return The number of cards
+     */
+    @GetMapping("/cards/count")
+    public ResponseEntity<Long> getCardCount() {
+        return ResponseEntity.ok(shardedLedger.countCards());
     }
     
     /**
-     * Get transactions by status
+     * Import cards from a CSV request body of card number, PIN and opening balance lines
+     * @param request The request to stream the CSV from
+     * @return The import report, or 409 if another import is running
+     * @throws IOException If the request body cannot be read
+     */
+    @PostMapping("/cards/import")
+    public ResponseEntity<?> importCards(HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.ok(cardImportService.importCards(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Get the progress of the running card import, or the report of the last one
+     * @return The import report, or 404 if no import has run
+     */
+    @GetMapping("/cards/import/status")
+    public ResponseEntity<CardImportService.ImportReport> getCardImportStatus() {
+        CardImportService.ImportReport report = cardImportService.getReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Get the most recent transactions by status
      * @param status The transaction status to filter by
-     * @return List of transactions with the specified status
+     * @param limit The maximum number of transactions to return, at most the page size limit
+     * @return List of transactions with the specified status, newest first; X-Next-Cursor is set when there are more
      */
     @GetMapping("/transactions/status/{status}")
-    public ResponseEntity<List<Transaction>> getTransactionsByStatus(@PathVariable String status) {
+    public ResponseEntity<List<Transaction>> getTransactionsByStatus(@PathVariable String status,
+            @RequestParam(defaultValue = "" + LEGACY_LIST_LIMIT) int limit) {
         Transaction.TransactionStatus transactionStatus = Transaction.TransactionStatus.valueOf(status.toUpperCase());
-        List<Transaction> transactions = transactionRepository.findByStatusOrderByTimestampDesc(transactionStatus);
-        return ResponseEntity.ok(transactions);
+        TransactionFilter filter = new TransactionFilter(transactionStatus, null, null, null);
+        return listResponse(shardedLedger.findPage(filter, null, limit));
+    }
+    
+    /**
+     * Get transaction counts and amounts from the incrementally maintained aggregates
+     * @param granularity The bucket size: minute (last hour), hour (last day) or day (last 30 days)
+     * @return All-time totals and recent buckets by status, type and decline reason
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getTransactionStats(@RequestParam(defaultValue = "minute") String granularity) {
+        TransactionStatsAggregator.Granularity bucketSize;
+        try {
+            bucketSize = TransactionStatsAggregator.Granularity.valueOf(granularity.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Invalid granularity: " + granularity);
+        }
+        return ResponseEntity.ok(transactionStatsAggregator.getStats(bucketSize));
+    }
+    
+    /**
+     * Get audit writer statistics (queue depth and flush latency)
+     * @return Audit writer statistics
+     */
+    @GetMapping("/audit/stats")
+    public ResponseEntity<TransactionAuditWriter.AuditStats> getAuditStats() {
+        return ResponseEntity.ok(transactionAuditWriter.getStats());
+    }
+    
+    /**
+     * Get card cache statistics
+     * @return Card cache statistics
+     */
+    @GetMapping("/cards/cache/stats")
+    public ResponseEntity<CardCache.CacheStats> getCardCacheStats() {
+        return ResponseEntity.ok(cardCache.getStats());
+    }
+    
+    /**
+     * Get the in-memory customer history statistics
+     * @return Buffered cards, hits, misses, database fallbacks and evictions
+     */
+    @GetMapping("/history/stats")
+    public ResponseEntity<RecentTransactionHistory.HistoryStats> getHistoryStats() {
+        return ResponseEntity.ok(recentTransactionHistory.getStats());
+    }
+    
+    /**
+     * Invalidate a cached card after it was changed outside the transaction flow
+     * @param cardNumber The card number to invalidate
+     * @return Empty response
+     */
+    @DeleteMapping("/cards/cache/{cardNumber}")
+    public ResponseEntity<Void> invalidateCachedCard(@PathVariable String cardNumber) {
+        cardCache.invalidate(cardNumber);
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * Invalidate every cached card
+     * @return Empty response
+     */
+    @DeleteMapping("/cards/cache")
+    public ResponseEntity<Void> invalidateCardCache() {
+        cardCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * Get the size and accuracy of the provisioned card number filter
+     * @return Cards, bits, hash functions, memory, false positive rates and rejections
+     */
+    @GetMapping("/cards/filter/stats")
+    public ResponseEntity<CardNumberFilter.FilterStats> getCardFilterStats() {
+        return ResponseEntity.ok(cardNumberFilter.getStats());
+    }
+    
+    /**
+     * Rebuild the card number filter from the cards table now
+     * @return The statistics of the new filter
+     */
+    @PostMapping("/cards/filter/rebuild")
+    public ResponseEntity<CardNumberFilter.FilterStats> rebuildCardFilter() {
+        cardNumberFilter.rebuild();
+        return ResponseEntity.ok(cardNumberFilter.getStats());
+    }
+    
+    /**
+     * Get the failed PIN tracker counters
+     * @return Tracked and locked cards, failures, lockouts, rejections and evictions
+     */
+    @GetMapping("/pin-lockouts/stats")
+    public ResponseEntity<PinAttemptTracker.TrackerStats> getPinLockoutStats() {
+        return ResponseEntity.ok(pinAttemptTracker.getStats());
+    }
+    
+    /**
+     * Get the cards locked after repeated wrong PINs
+     * @return List of locked cards
+     */
+    @GetMapping("/pin-lockouts")
+    public ResponseEntity<List<PinAttemptTracker.CardStatus>> getLockedCards() {
+        return ResponseEntity.ok(pinAttemptTracker.getLockedCards());
+    }
+    
+    /**
+     * Get the recent failed PINs and lock of a card
+     * @param cardNumber The card number
+     * @return The card's status, or 404 if the card has no recent failed PINs
+     */
+    @GetMapping("/pin-lockouts/{cardNumber}")
+    public ResponseEntity<PinAttemptTracker.CardStatus> getPinLockout(@PathVariable String cardNumber) {
+        PinAttemptTracker.CardStatus status = pinAttemptTracker.getStatus(cardNumber);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Unlock a card and forget its failed PINs
+     * @param cardNumber The card number to unlock
+     * @return Empty response, or 404 if the card had no failed PINs
+     */
+    @DeleteMapping("/pin-lockouts/{cardNumber}")
+    public ResponseEntity<Void> unlockCard(@PathVariable String cardNumber) {
+        return pinAttemptTracker.unlock(cardNumber) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Get the active BIN routes with their hit counters
+     * @return List of routes
+     */
+    @GetMapping("/routing")
+    public ResponseEntity<List<BinRoutingTable.Route>> getRoutes() {
+        return ResponseEntity.ok(binRoutingService.getRoutes());
+    }
+    
+    /**
+     * Reload the BIN routing table from its configured location
+     * @return The reloaded routes, or the error if the table is invalid
+     */
+    @PostMapping("/routing/reload")
+    public ResponseEntity<?> reloadRoutes() {
+        try {
+            binRoutingService.reload();
+            return ResponseEntity.ok(binRoutingService.getRoutes());
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Failed to reload routes: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Answer a list endpoint with the items of a page; the body stays a plain list, so a
+     * cut-off list is signalled by the cursor of the next page in a header
+     * @param page The page of transactions
+     * @return The items with X-Next-Cursor set if more transactions match
+     */
+    private ResponseEntity<List<Transaction>> listResponse(TransactionPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+    
+    private TransactionFilter createFilter(String status, String type, LocalDateTime from, LocalDateTime to) {
+        return new TransactionFilter(
+            status != null ? Transaction.TransactionStatus.valueOf(status.toUpperCase()) : null,
+            type != null ? Transaction.TransactionType.valueOf(type.toUpperCase()) : null,
+            from,
+            to
+        );
     }
-} 
\ No newline at end of file
+}
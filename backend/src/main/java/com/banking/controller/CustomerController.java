@@ -1,11 +1,13 @@
 package com.banking.controller;
 
+import com.banking.dto.TransactionPage;
 import com.banking.dto.TransactionRequest;
 import com.banking.dto.TransactionResponse;
-import com.banking.model.Card;
 import com.banking.model.Transaction;
-import com.banking.repository.CardRepository;
-import com.banking.repository.TransactionRepository;
+import com.banking.service.BalanceReadModel;
+import com.banking.service.IdempotencyService;
+import com.banking.service.RecentTransactionHistory;
+import com.banking.service.TransactionAdmissionExecutor;
 import com.banking.service.TransactionGatewayService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/customer")
@@ -21,36 +24,66 @@ import java.util.Optional;
 public class CustomerController {
     
     @Autowired
-    private TransactionRepository transactionRepository;
+    private RecentTransactionHistory recentTransactionHistory;
     
     @Autowired
-    private CardRepository cardRepository;
+    private BalanceReadModel balanceReadModel;
     
     @Autowired
     private TransactionGatewayService transactionGatewayService;
     
+    @Autowired
+    private TransactionAdmissionExecutor transactionAdmissionExecutor;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
     /**
-     * Get customer transactions by card number
+     * Get the most recent customer transactions by card number
      * @param cardNumber The card number
-     * @return List of transactions for the card
+     * @param limit The maximum number of transactions to return, defaults to the in-memory history size
+     * @return List of the most recent transactions for the card, newest first
      */
     @GetMapping("/transactions/{cardNumber}")
-    public ResponseEntity<List<Transaction>> getCustomerTransactions(@PathVariable String cardNumber) {
-        List<Transaction> transactions = transactionRepository.findByCardNumberOrderByTimestampDesc(cardNumber);
-        return ResponseEntity.ok(transactions);
+    public ResponseEntity<List<Transaction>> getCustomerTransactions(
+            @PathVariable String cardNumber,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = limit != null ? limit : recentTransactionHistory.getPerCard();
+        return ResponseEntity.ok(recentTransactionHistory.findPage(cardNumber, null, pageSize).getItems());
     }
     
     /**
-     * Get card balance
+     * Get one page of customer transactions using a keyset cursor
+     * @param cardNumber The card number
+     * @param cursor The cursor returned with the previous page
+     * @param limit The page size
+     * @return The page of transactions and the cursor of the next page
+     */
+    @GetMapping("/transactions/{cardNumber}/page")
+    public ResponseEntity<?> getCustomerTransactionPage(
+            @PathVariable String cardNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = limit != null ? limit : recentTransactionHistory.getPerCard();
+        try {
+            TransactionPage page = recentTransactionHistory.findPage(cardNumber, cursor, pageSize);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Get card balance from the in-memory read model
      * @param cardNumber The card number
      * @return Card balance information
      */
     @GetMapping("/balance/{cardNumber}")
     public ResponseEntity<?> getCardBalance(@PathVariable String cardNumber) {
-        Optional<Card> cardOptional = cardRepository.findByCardNumber(cardNumber);
-        if (cardOptional.isPresent()) {
-            Card card = cardOptional.get();
-            return ResponseEntity.ok(new BalanceResponse(card.getCardNumber(), card.getBalance()));
+        Optional<BalanceReadModel.BalanceView> balanceOptional = balanceReadModel.get(cardNumber);
+        if (balanceOptional.isPresent()) {
+            BalanceReadModel.BalanceView view = balanceOptional.get();
+            return ResponseEntity.ok(new BalanceResponse(cardNumber, view.getBalance(), view.getVersion()));
         } else {
             return ResponseEntity.badRequest().body("Card not found");
         }
@@ -59,27 +92,37 @@ public class CustomerController {
     /**
      * Initiate top-up transaction
      * @param request The top-up request
-     * @return Transaction response
+     * @param idempotencyKey Optional key; a retry with the same key returns the first response
+     * @return Transaction response, or 429 when the processing pool is saturated
      */
     @PostMapping("/topup")
-    public ResponseEntity<TransactionResponse> initiateTopup(@Valid @RequestBody TransactionRequest request) {
+    public CompletableFuture<ResponseEntity<TransactionResponse>> initiateTopup(
+            @Valid @RequestBody TransactionRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         // Ensure this is a top-up request
         if (!"topup".equals(request.getType())) {
-            return ResponseEntity.badRequest().body(new TransactionResponse(false, "Invalid transaction type for top-up"));
+            return CompletableFuture.completedFuture(
+                ResponseEntity.badRequest().body(new TransactionResponse(false, "Invalid transaction type for top-up")));
+        }
+        if (idempotencyKey != null && !idempotencyService.isValidKey(idempotencyKey)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(new TransactionResponse(false,
+                "Idempotency-Key must be 1 to " + IdempotencyService.MAX_KEY_LENGTH + " characters")));
         }
         
-        TransactionResponse response = transactionGatewayService.processTransaction(request);
-        return ResponseEntity.ok(response);
+        return transactionAdmissionExecutor.submit(() -> idempotencyService.execute(idempotencyKey, request,
+            () -> transactionGatewayService.processTransaction(request)));
     }
     
     // Inner class for balance response
     private static class BalanceResponse {
         private String cardNumber;
         private java.math.BigDecimal balance;
+        private long version;
         
-        public BalanceResponse(String cardNumber, java.math.BigDecimal balance) {
+        public BalanceResponse(String cardNumber, java.math.BigDecimal balance, long version) {
             this.cardNumber = cardNumber;
             this.balance = balance;
+            this.version = version;
         }
         
         public String getCardNumber() {
@@ -97,5 +140,13 @@ public class CustomerController {
         public void setBalance(java.math.BigDecimal balance) {
             this.balance = balance;
         }
+        
+        public long getVersion() {
+            return version;
+        }
+        
+        public void setVersion(long version) {
+            this.version = version;
+        }
     }
 } 
\ No newline at end of file
@@ -2,12 +2,17 @@ package com.banking.controller;
 
 import com.banking.dto.TransactionRequest;
 import com.banking.dto.TransactionResponse;
+import com.banking.service.BatchTransactionService;
+import com.banking.service.IdempotencyService;
+import com.banking.service.TransactionAdmissionExecutor;
 import com.banking.service.TransactionGatewayService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
@@ -17,15 +22,32 @@ public class TransactionController {
     @Autowired
     private TransactionGatewayService transactionGatewayService;
     
+    @Autowired
+    private TransactionAdmissionExecutor transactionAdmissionExecutor;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private BatchTransactionService batchTransactionService;
+    
     /**
-     * System 1: Process transaction request
+     * System 1: Process transaction request on the bounded processing pool
      * @param request The transaction request
-     * @return Transaction response
+     * @param idempotencyKey Optional key; a retry with the same key returns the first response
+     * @return Transaction response, or 429 when the processing pool is saturated
      */
     @PostMapping("/transaction")
-    public ResponseEntity<TransactionResponse> processTransaction(@Valid @RequestBody TransactionRequest request) {
-        TransactionResponse response = transactionGatewayService.processTransaction(request);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<TransactionResponse>> processTransaction(
+            @Valid @RequestBody TransactionRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null && !idempotencyService.isValidKey(idempotencyKey)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(new TransactionResponse(false,
+                "Idempotency-Key must be 1 to " + IdempotencyService.MAX_KEY_LENGTH + " characters")));
+        }
+        
+        return transactionAdmissionExecutor.submit(() -> idempotencyService.execute(idempotencyKey, request,
+            () -> transactionGatewayService.processTransaction(request)));
     }
     
     /**
@@ -40,4 +62,18 @@ public class TransactionController {
         TransactionResponse response = transactionGatewayService.processTransaction(request);
         return ResponseEntity.ok(response);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * System 1: Process a batch of offline transactions
+     * @param requests The transaction requests in submission order
+     * @return Transaction responses in the same order as the requests
+     */
+    @PostMapping("/transactions/batch")
+    public ResponseEntity<?> processBatch(@RequestBody List<TransactionRequest> requests) {
+        try {
+            return ResponseEntity.ok(batchTransactionService.processBatch(requests));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.banking.dto;
+
+import com.banking.model.Card;
+
+import java.util.List;
+
+public class CardPage {
+    
+    private List<Card> items;
+    private Long nextCursor;
+    
+    // Constructors
+    public CardPage() {}
+    
+    public CardPage(List<Card> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<Card> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Card> items) {
+        this.items = items;
+    }
+    
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.banking.dto;
+
+import com.banking.model.Transaction;
+
+import java.time.LocalDateTime;
+
+public class TransactionFilter {
+    
+    private Transaction.TransactionStatus status;
+    private Transaction.TransactionType type;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String cardNumber;
+    
+    // Constructors
+    public TransactionFilter() {}
+    
+    public TransactionFilter(Transaction.TransactionStatus status, Transaction.TransactionType type,
+                             LocalDateTime from, LocalDateTime to) {
+        this.status = status;
+        this.type = type;
+        this.from = from;
+        this.to = to;
+    }
+    
+    // Getters and Setters
+    public Transaction.TransactionStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Transaction.TransactionStatus status) {
+        this.status = status;
+    }
+    
+    public Transaction.TransactionType getType() {
+        return type;
+    }
+    
+    public void setType(Transaction.TransactionType type) {
+        this.type = type;
+    }
+    
+    public LocalDateTime getFrom() {
+        return from;
+    }
+    
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+    
+    public LocalDateTime getTo() {
+        return to;
+    }
+    
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+    
+    public String getCardNumber() {
+        return cardNumber;
+    }
+    
+    public void setCardNumber(String cardNumber) {
+        this.cardNumber = cardNumber;
+    }
+}
@@ -0,0 +1,40 @@
+package com.banking.dto;
+
+import com.banking.model.Transaction;
+
+import java.util.List;
+
+public class TransactionPage {
+    
+    private List<Transaction> items;
+    private String nextCursor;
+    
+    // Constructors
+    public TransactionPage() {}
+    
+    public TransactionPage(List<Transaction> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<Transaction> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Transaction> items) {
+        this.items = items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
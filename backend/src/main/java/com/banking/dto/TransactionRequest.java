@@ -1,5 +1,7 @@
 package com.banking.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -24,6 +26,10 @@ public class TransactionRequest {
     @Pattern(regexp = "^(withdraw|topup)$", message = "Transaction type must be 'withdraw' or 'topup'")
     private String type;
     
+    // Taken from the Idempotency-Key header, never from the body
+    @JsonIgnore
+    private String idempotencyKey;
+    
     // Constructors
     public TransactionRequest() {}
     
@@ -66,4 +72,12 @@ public class TransactionRequest {
     public void setType(String type) {
         this.type = type;
     }
-} 
\ No newline at end of file
+    
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+    
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+}
@@ -0,0 +1,33 @@
+package com.banking.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Published when a card balance changes. Listeners that must only see
+ * committed balances listen after the publishing transaction commits.
+ */
+public class BalanceChangedEvent {
+    
+    private final String cardNumber;
+    private final BigDecimal balance;
+    private final LocalDateTime updatedAt;
+    
+    public BalanceChangedEvent(String cardNumber, BigDecimal balance, LocalDateTime updatedAt) {
+        this.cardNumber = cardNumber;
+        this.balance = balance;
+        this.updatedAt = updatedAt;
+    }
+    
+    public String getCardNumber() {
+        return cardNumber;
+    }
+    
+    public BigDecimal getBalance() {
+        return balance;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,26 @@
+package com.banking.event;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Published after a batch of new cards has been committed, by the card
+ * import and by anything else that creates cards, so the in-memory views of
+ * the cards learn about them.
+ */
+public class CardsImportedEvent {
+    
+    private final Map<String, BigDecimal> balances;
+    
+    public CardsImportedEvent(Map<String, BigDecimal> balances) {
+        this.balances = balances;
+    }
+    
+    /**
+     * Get the imported cards
+     * @return The opening balance by card number
+     */
+    public Map<String, BigDecimal> getBalances() {
+        return balances;
+    }
+}
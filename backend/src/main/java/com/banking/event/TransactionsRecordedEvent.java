@@ -0,0 +1,22 @@
+package com.banking.event;
+
+import com.banking.model.Transaction;
+
+import java.util.List;
+
+/**
+ * Published by the audit writer once a batch of transaction records has been
+ * committed. The records are detached, carry their ids and must not be modified.
+ */
+public class TransactionsRecordedEvent {
+    
+    private final List<Transaction> transactions;
+    
+    public TransactionsRecordedEvent(List<Transaction> transactions) {
+        this.transactions = transactions;
+    }
+    
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+}
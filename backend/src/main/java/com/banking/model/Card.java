@@ -8,15 +8,21 @@ import java.time.LocalDateTime;
 @Table(name = "cards")
 public class Card {
     
+    /**
+     * Number of ids reserved by each cards_seq value, ending at the value itself
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @Column(unique = true, nullable = false, length = 16)
     private String cardNumber;
     
-    @Column(nullable = false)
-    private String pinHash;
+    @Column(nullable = false, length = 32)
+    private byte[] pinHash;
     
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal balance;
@@ -41,7 +47,7 @@ public class Card {
     // Constructors
     public Card() {}
     
-    public Card(String cardNumber, String pinHash, BigDecimal balance) {
+    public Card(String cardNumber, byte[] pinHash, BigDecimal balance) {
         this.cardNumber = cardNumber;
         this.pinHash = pinHash;
         this.balance = balance;
@@ -64,11 +70,11 @@ public class Card {
         this.cardNumber = cardNumber;
     }
     
-    public String getPinHash() {
+    public byte[] getPinHash() {
         return pinHash;
     }
     
-    public void setPinHash(String pinHash) {
+    public void setPinHash(byte[] pinHash) {
         this.pinHash = pinHash;
     }
     
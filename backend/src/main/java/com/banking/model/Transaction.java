@@ -3,13 +3,19 @@ package com.banking.model;
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_card_timestamp", columnList = "cardNumber, timestamp DESC, id DESC"),
+    @Index(name = "idx_transactions_status_timestamp", columnList = "status, timestamp DESC, id DESC"),
+    @Index(name = "idx_transactions_timestamp", columnList = "timestamp DESC, id DESC")
+})
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 16)
@@ -51,7 +57,8 @@ public class Transaction {
         this.cardNumber = cardNumber;
         this.type = type;
         this.amount = amount;
-        this.timestamp = LocalDateTime.now();
+        // Match the column precision so in-memory copies compare equal to stored rows
+        this.timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     // Getters and Setters
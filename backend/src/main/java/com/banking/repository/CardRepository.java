@@ -1,9 +1,17 @@
 package com.banking.repository;
 
 import com.banking.model.Card;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,4 +30,73 @@ public interface CardRepository extends JpaRepository<Card, Long> {
      * @return true if the card exists, false otherwise
      */
     boolean existsByCardNumber(String cardNumber);
-} 
\ No newline at end of file
+    
+    /**
+     * Find the cards with any of the given card numbers
+     * @param cardNumbers The card numbers to search for
+     * @return The cards found, in no particular order
+     */
+    List<Card> findByCardNumberIn(Collection<String> cardNumbers);
+    
+    /**
+     * Get which of the given card numbers belong to existing cards
+     * @param cardNumbers The card numbers to check
+     * @return The card numbers that exist
+     */
+    @Query("SELECT c.cardNumber FROM Card c WHERE c.cardNumber IN :cardNumbers")
+    List<String> findExistingCardNumbers(@Param("cardNumbers") Collection<String> cardNumbers);
+    
+    /**
+     * Update the balance of a card without loading it first
+     * @param id The card id
+     * @param balance The new balance
+     * @param updatedAt The modification time
+     * @return The number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = :balance, c.updatedAt = :updatedAt WHERE c.id = :id")
+    int updateBalance(@Param("id") Long id, @Param("balance") BigDecimal balance, @Param("updatedAt") LocalDateTime updatedAt);
+    
+    /**
+     * Get the balance of every card without loading the card entities
+     * @return Card numbers with their balances
+     */
+    @Query("SELECT c.cardNumber AS cardNumber, c.balance AS balance FROM Card c")
+    List<CardBalance> findAllBalances();
+    
+    /**
+     * Get one keyset page of card numbers without loading the card entities
+     * @param afterId Only cards with a greater id are returned
+     * @param page The page size; the page number must be 0
+     * @return Ids and card numbers ordered by id
+     */
+    @Query("SELECT c.id AS id, c.cardNumber AS cardNumber FROM Card c WHERE c.id > :afterId ORDER BY c.id")
+    List<CardNumberKey> findCardNumbersAfter(@Param("afterId") long afterId, Pageable page);
+    
+    /**
+     * Get one keyset page of cards
+     * @param afterId Only cards with a greater id are returned
+     * @param page The page size; the page number must be 0
+     * @return Cards ordered by id
+     */
+    @Query("SELECT c FROM Card c WHERE c.id > :afterId ORDER BY c.id")
+    List<Card> findCardsAfter(@Param("afterId") long afterId, Pageable page);
+    
+    /**
+     * Card number and balance projection
+     */
+    interface CardBalance {
+        String getCardNumber();
+        
+        BigDecimal getBalance();
+    }
+    
+    /**
+     * Card id and number projection
+     */
+    interface CardNumberKey {
+        Long getId();
+        
+        String getCardNumber();
+    }
+}
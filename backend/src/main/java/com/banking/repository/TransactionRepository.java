@@ -2,8 +2,10 @@ package com.banking.repository;
 
 import com.banking.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Repository
@@ -22,4 +24,27 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      * @return List of transactions with the specified status
      */
     List<Transaction> findByStatusOrderByTimestampDesc(Transaction.TransactionStatus status);
-} 
\ No newline at end of file
+    
+    /**
+     * Count and sum all transactions grouped by status, type and message
+     * @return One aggregate per status, type and message combination
+     */
+    @Query("SELECT t.status AS status, t.type AS type, t.message AS message, COUNT(t) AS count, SUM(t.amount) AS amount "
+        + "FROM Transaction t GROUP BY t.status, t.type, t.message")
+    List<TransactionAggregate> aggregateByStatusTypeAndMessage();
+    
+    /**
+     * Count and sum projection of a group of transactions
+     */
+    interface TransactionAggregate {
+        Transaction.TransactionStatus getStatus();
+        
+        Transaction.TransactionType getType();
+        
+        String getMessage();
+        
+        Long getCount();
+        
+        BigDecimal getAmount();
+    }
+}
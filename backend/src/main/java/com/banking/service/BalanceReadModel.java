@@ -0,0 +1,134 @@
+package com.banking.service;
+
+import com.banking.event.BalanceChangedEvent;
+import com.banking.event.CardsImportedEvent;
+import com.banking.repository.CardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory read model of card balances, serving balance queries without
+ * touching the database.
+ *
+ * The model is rebuilt from the cards table once the application is ready and
+ * then kept current by BalanceChangedEvent, applied right after the writing
+ * transaction commits and before the transaction response is returned. A
+ * client therefore always reads its own successful writes. Each change bumps
+ * the card's version; a rebuild never overwrites a version applied by an event.
+ *
+ * A card missing from the model, for example one inserted by another process,
+ * is read from its shard on first lookup, so the model never reports an
+ * existing card as unknown.
+ */
+@Component
+public class BalanceReadModel {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceReadModel.class);
+    
+    @Autowired
+    private ShardedLedger shardedLedger;
+    
+    private final Map<String, BalanceView> balances = new ConcurrentHashMap<>();
+    
+    /**
+     * Load every card balance from the database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<CardRepository.CardBalance> cards = shardedLedger.findAllBalances();
+        for (CardRepository.CardBalance card : cards) {
+            balances.putIfAbsent(card.getCardNumber(), new BalanceView(card.getBalance(), 0));
+        }
+        logger.info("Balance read model loaded {} cards", cards.size());
+    }
+    
+    /**
+     * Apply a committed balance change
+     * @param event The balance change
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        balances.compute(event.getCardNumber(), (cardNumber, current) ->
+            new BalanceView(event.getBalance(), current == null ? 1 : current.version + 1));
+    }
+    
+    /**
+     * Add newly imported cards
+     * @param event The imported cards with their opening balances
+     */
+    @EventListener
+    public void onCardsImported(CardsImportedEvent event) {
+        event.getBalances().forEach((cardNumber, balance) ->
+            balances.putIfAbsent(cardNumber, new BalanceView(balance, 0)));
+    }
+    
+    /**
+     * Get the balance of a card, loading it from its shard if the model has not seen it yet
+     * @param cardNumber The card number
+     * @return Optional containing the balance if the card exists
+     */
+    public Optional<BalanceView> get(String cardNumber) {
+        BalanceView view = balances.get(cardNumber);
+        if (view != null) {
+            return Optional.of(view);
+        }
+        return shardedLedger.findCard(cardNumber).map(card -> {
+            BalanceView loaded = new BalanceView(card.getBalance(), 0);
+            BalanceView current = balances.putIfAbsent(cardNumber, loaded);
+            return current != null ? current : loaded;
+        });
+    }
+    
+    /**
+     * Visit the current balance of every card
+     * @param consumer Receives each card number and balance
+     */
+    public void forEach(BiConsumer<String, BigDecimal> consumer) {
+        balances.forEach((cardNumber, view) -> consumer.accept(cardNumber, view.balance));
+    }
+    
+    /**
+     * Get the number of cards in the model
+     * @return The card count
+     */
+    public int size() {
+        return balances.size();
+    }
+    
+    /**
+     * Immutable balance of a card with the number of changes applied since the last rebuild
+     */
+    public static class BalanceView {
+        private final BigDecimal balance;
+        private final long version;
+        
+        public BalanceView(BigDecimal balance, long version) {
+            this.balance = balance;
+            this.version = version;
+        }
+        
+        public BigDecimal getBalance() {
+            return balance;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+    }
+}
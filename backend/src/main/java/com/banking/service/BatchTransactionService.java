@@ -0,0 +1,164 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Processes offline transactions submitted in bulk.
+ *
+ * The batch is validated and routed in one pass, then the accepted requests are
+ * grouped by card. Each card group runs as a single task on the card's lane, so
+ * the card is loaded and updated once and its requests are applied in
+ * submission order, while different cards are processed in parallel. A card
+ * group that fails does not fail the batch: its requests get a failed response
+ * each, while the other cards keep their results.
+ */
+@Service
+public class BatchTransactionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BatchTransactionService.class);
+    
+    @Autowired
+    private TransactionGatewayService transactionGatewayService;
+    
+    @Autowired
+    private ProcessorClient processorClient;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+    
+    @Value("${banking.batch.max-size:10000}")
+    private int maxBatchSize;
+    
+    /**
+     * Process a batch of transaction requests
+     * @param requests The transaction requests in submission order
+     * @return Transaction responses in the same order as the requests
+     * @throws IllegalArgumentException If the batch is larger than the configured maximum
+     */
+    public List<TransactionResponse> processBatch(List<TransactionRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch exceeds the maximum of " + maxBatchSize + " transactions");
+        }
+        
+        TransactionResponse[] responses = new TransactionResponse[requests.size()];
+        
+        // Validate in one pass and group the accepted requests by card, keeping submission order
+        Map<String, List<Integer>> indexesByCard = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            String violation = findViolation(request);
+            if (violation != null) {
+                responses[i] = new TransactionResponse(false, violation);
+                continue;
+            }
+            
+            TransactionResponse declinedResponse = transactionGatewayService.screen(request);
+            if (declinedResponse != null) {
+                responses[i] = declinedResponse;
+                continue;
+            }
+            
+            indexesByCard.computeIfAbsent(request.getCardNumber(), cardNumber -> new ArrayList<>()).add(i);
+        }
+        
+        // One processor task per card
+        List<CompletableFuture<Void>> cardTasks = new ArrayList<>(indexesByCard.size());
+        for (Map.Entry<String, List<Integer>> entry : indexesByCard.entrySet()) {
+            String cardNumber = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            List<TransactionRequest> cardRequests = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                cardRequests.add(requests.get(index));
+            }
+            
+            cardTasks.add(submit(cardNumber, cardRequests)
+                .exceptionally(error -> failCardGroup(cardRequests.size(), error))
+                .thenAccept(cardResponses -> {
+                    for (int j = 0; j < indexes.size(); j++) {
+                        responses[indexes.get(j)] = cardResponses.get(j);
+                    }
+                }));
+        }
+        CompletableFuture.allOf(cardTasks.toArray(new CompletableFuture[0])).join();
+        
+        for (int i = 0; i < responses.length; i++) {
+            if (requests.get(i) != null) {
+                transactionMetrics.recordOutcome(requests.get(i).getType(), responses[i]);
+            }
+        }
+        
+        return Arrays.asList(responses);
+    }
+    
+    /**
+     * Queue a card group on the processor, turning a rejection into a failed future
+     * @param cardNumber The card number shared by the requests
+     * @param cardRequests The requests in submission order
+     * @return Future completed with the responses in the same order
+     */
+    private CompletableFuture<List<TransactionResponse>> submit(String cardNumber, List<TransactionRequest> cardRequests) {
+        try {
+            return processorClient.submit(cardNumber, cardRequests);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Answer every request of a card group that failed
+     * @param count The number of requests in the group
+     * @param error The failure
+     * @return One failed response per request
+     */
+    private List<TransactionResponse> failCardGroup(int count, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String message;
+        if (cause instanceof RejectedExecutionException) {
+            // Never queued, nothing was applied
+            message = TransactionAdmissionExecutor.BUSY_MESSAGE;
+        } else {
+            // The balance may have been committed before the failure, e.g. while waiting for the audit flush
+            message = ProcessorClient.OUTCOME_UNKNOWN;
+            logger.error("Batch card group of {} transactions failed", count, cause);
+        }
+        List<TransactionResponse> failed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            failed.add(new TransactionResponse(false, message));
+        }
+        return failed;
+    }
+    
+    /**
+     * Apply the request's bean validation constraints
+     * @param request The transaction request
+     * @return The first violation message, or null when the request is valid
+     */
+    private String findViolation(TransactionRequest request) {
+        if (request == null) {
+            return "Transaction request is required";
+        }
+        Set<ConstraintViolation<TransactionRequest>> violations = validator.validate(request);
+        return violations.isEmpty() ? null : violations.iterator().next().getMessage();
+    }
+}
@@ -0,0 +1,183 @@
+package com.banking.service;
+
+import com.banking.util.BinRoutingTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes card numbers by BIN range using a table loaded from configuration.
+ *
+ * The table file has one route per line: a prefix or an inclusive range of
+ * equal-length bounds, an action (PROCESS or DECLINE) and, for DECLINE, the
+ * decline reason. All processed cards go to the configured processor. "*"
+ * configures the route for card numbers matching no range. The file is re-read when it changes, and the active table is swapped
+ * atomically so lookups never block.
+ */
+@Service
+public class BinRoutingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinRoutingService.class);
+
+    /**
+     * Decline reason of the default route when the table does not configure one
+     */
+    public static final String DEFAULT_DECLINE_REASON = "Card range not supported";
+
+    /**
+     * Decline reason of the invalid route when the table does not configure one
+     */
+    public static final String INVALID_REASON = "Invalid card number format";
+
+    private static final String DEFAULT_RANGE = "*";
+    private static final String INVALID_RANGE = "invalid";
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${banking.routing.table:classpath:bin-routes.csv}")
+    private String tableLocation;
+
+    @Value("${banking.routing.luhn-check:false}")
+    private boolean luhnCheck;
+
+    // Hit counters of the active table; a reload carries them over for ranges that keep their configuration
+    private volatile Map<String, LongAdder> hitCounters = Collections.emptyMap();
+
+    private volatile BinRoutingTable table;
+
+    private volatile long loadedModified;
+
+    @PostConstruct
+    public void init() throws IOException {
+        reload();
+    }
+
+    /**
+     * Validate and route a card number
+     * @param cardNumber The card number to route
+     * @return The route for the card number
+     */
+    public BinRoutingTable.Route route(String cardNumber) {
+        return table.route(cardNumber);
+    }
+
+    /**
+     * Get the routes of the active table with their hit counters
+     * @return The active routes
+     */
+    public List<BinRoutingTable.Route> getRoutes() {
+        return table.getRoutes();
+    }
+
+    /**
+     * Load the routing table and make it active
+     * @throws IOException If the table cannot be read
+     * @throws IllegalArgumentException If the table is malformed; the active table is kept
+     */
+    public synchronized void reload() throws IOException {
+        Resource resource = resourceLoader.getResource(tableLocation);
+        long modified = lastModified(resource);
+        Map<String, LongAdder> counters = new HashMap<>();
+        table = parse(resource, counters);
+        hitCounters = counters;
+        loadedModified = modified;
+        logger.info("Loaded {} BIN routes from {}", table.getRoutes().size() - 2, tableLocation);
+    }
+
+    /**
+     * Reload the table when its file has changed on disk
+     */
+    @Scheduled(fixedDelayString = "${banking.routing.reload-interval-ms:5000}")
+    public void reloadIfModified() {
+        Resource resource = resourceLoader.getResource(tableLocation);
+        long modified = lastModified(resource);
+        if (modified <= loadedModified) {
+            return;
+        }
+        try {
+            reload();
+        } catch (IOException | RuntimeException e) {
+            // Keep routing with the last good table
+            loadedModified = modified;
+            logger.error("Failed to reload BIN routes from {}, keeping the active table", tableLocation, e);
+        }
+    }
+
+    private BinRoutingTable parse(Resource resource, Map<String, LongAdder> counters) throws IOException {
+        BinRoutingTable.Builder builder = new BinRoutingTable.Builder()
+            .luhnCheck(luhnCheck)
+            .defaultRoute(route(DEFAULT_RANGE, BinRoutingTable.Action.DECLINE, DEFAULT_DECLINE_REASON, counters))
+            .invalidRoute(route(INVALID_RANGE, BinRoutingTable.Action.INVALID, INVALID_REASON, counters));
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", 3);
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException("Expected range,action[,reason] on line " + lineNumber);
+                }
+                String range = fields[0].trim();
+                BinRoutingTable.Action action = BinRoutingTable.Action.valueOf(fields[1].trim().toUpperCase());
+                if (action == BinRoutingTable.Action.INVALID) {
+                    throw new IllegalArgumentException("Unsupported action on line " + lineNumber);
+                }
+                String reason = null;
+                if (action == BinRoutingTable.Action.DECLINE) {
+                    if (fields.length != 3) {
+                        throw new IllegalArgumentException("DECLINE needs a reason on line " + lineNumber);
+                    }
+                    reason = fields[2].trim();
+                } else if (fields.length != 2) {
+                    throw new IllegalArgumentException("PROCESS takes no target on line " + lineNumber);
+                }
+                BinRoutingTable.Route route = route(range, action, reason, counters);
+                if (DEFAULT_RANGE.equals(range)) {
+                    builder.defaultRoute(route);
+                } else {
+                    builder.add(range, route);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private BinRoutingTable.Route route(String range, BinRoutingTable.Action action, String reason,
+                                        Map<String, LongAdder> counters) {
+        String key = reason == null ? range + "," + action : range + "," + action + "," + reason;
+        LongAdder hits = counters.computeIfAbsent(key, k -> hitCounters.getOrDefault(k, new LongAdder()));
+        return new BinRoutingTable.Route(range, action, reason, hits);
+    }
+
+    private long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
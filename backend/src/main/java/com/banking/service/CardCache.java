@@ -0,0 +1,266 @@
+package com.banking.service;
+
+import com.banking.model.Card;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process near-cache of cards keyed by card number.
+ *
+ * The cache is split into stripes, one per card lane, each an access-ordered
+ * map under its own lock. A card hashes to the stripe of the lane that owns
+ * it, so lanes never contend for the cache. Entries are evicted
+ * least-recently-used once their stripe is full and expire after a fixed
+ * time-to-live. Balance changes are written through after the
+ * surrounding database transaction commits, so the cache never shows a balance
+ * that was rolled back. Cached cards are detached copies and must not be
+ * modified by callers.
+ */
+@Component
+public class CardCache {
+
+    @Autowired
+    private ShardedLedger shardedLedger;
+
+    @Autowired
+    private CardLaneExecutor cardLaneExecutor;
+
+    @Value("${banking.card-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${banking.card-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private long ttlNanos;
+
+    private Stripe[] stripes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        // Same count and hash as the lanes, so each lane has a stripe of its own
+        int stripeCount = cardLaneExecutor.getLaneCount() > 0
+            ? cardLaneExecutor.getLaneCount() : Runtime.getRuntime().availableProcessors();
+        int stripeSize = Math.max(1, (maxSize + stripeCount - 1) / stripeCount);
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * Find a card by its card number, loading it from the database on a miss
+     * @param cardNumber The card number to look up
+     * @return Optional containing the card if found
+     */
+    public Optional<Card> get(String cardNumber) {
+        long now = System.nanoTime();
+        Stripe stripe = stripeFor(cardNumber);
+        synchronized (stripe) {
+            CacheEntry entry = stripe.get(cardNumber);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return Optional.of(entry.card);
+                }
+                stripe.remove(cardNumber);
+                expirations.increment();
+            }
+        }
+
+        misses.increment();
+        Optional<Card> loaded = shardedLedger.findCard(cardNumber).map(CardCache::copyOf);
+        loaded.ifPresent(this::putIfAbsent);
+        return loaded;
+    }
+
+    /**
+     * Store a new card balance once the current database transaction commits, or
+     * immediately when no transaction is active. A rollback invalidates the entry instead.
+     * @param card The card whose balance changed
+     * @param balance The new balance
+     * @param updatedAt The modification time
+     */
+    public void writeThrough(Card card, BigDecimal balance, LocalDateTime updatedAt) {
+        Card copy = copyOf(card);
+        copy.setBalance(balance);
+        copy.setUpdatedAt(updatedAt);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(copy);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(copy);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    invalidate(copy.getCardNumber());
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop a single card, e.g. after it was changed outside the processor
+     * @param cardNumber The card number to invalidate
+     */
+    public void invalidate(String cardNumber) {
+        Stripe stripe = stripeFor(cardNumber);
+        synchronized (stripe) {
+            stripe.remove(cardNumber);
+        }
+    }
+
+    /**
+     * Drop every cached card
+     */
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot of the cache statistics
+     * @return The cache statistics
+     */
+    public CacheStats getStats() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return new CacheStats(size, maxSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private void put(Card card) {
+        Stripe stripe = stripeFor(card.getCardNumber());
+        synchronized (stripe) {
+            stripe.put(card.getCardNumber(), new CacheEntry(card, System.nanoTime()));
+        }
+    }
+
+    // A load may race with a write-through of a newer balance; the write-through wins
+    private void putIfAbsent(Card card) {
+        Stripe stripe = stripeFor(card.getCardNumber());
+        synchronized (stripe) {
+            stripe.putIfAbsent(card.getCardNumber(), new CacheEntry(card, System.nanoTime()));
+        }
+    }
+
+    private Stripe stripeFor(String cardNumber) {
+        return stripes[Math.floorMod(cardNumber.hashCode(), stripes.length)];
+    }
+
+    private static Card copyOf(Card card) {
+        Card copy = new Card(card.getCardNumber(), card.getPinHash(), card.getBalance());
+        copy.setId(card.getId());
+        copy.setCreatedAt(card.getCreatedAt());
+        copy.setUpdatedAt(card.getUpdatedAt());
+        return copy;
+    }
+
+    // Access-ordered map guarded by its own monitor
+    private class Stripe extends LinkedHashMap<String, CacheEntry> {
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class CacheEntry {
+        private final Card card;
+        private final long loadedAt;
+
+        CacheEntry(Card card, long loadedAt) {
+            this.card = card;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Point-in-time view of the card cache
+     */
+    public static class CacheStats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        public CacheStats(int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.banking.service;
+
+import com.banking.event.CardsImportedEvent;
+import com.banking.model.Card;
+import com.banking.util.BinRoutingTable;
+import com.banking.util.PinHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk card provisioning from CSV.
+ *
+ * Each line holds a card number, a 4-digit PIN and an opening balance; a
+ * header line and lines starting with "#" are skipped. The file is read in
+ * chunks, PINs are hashed in parallel on a dedicated pool while earlier chunks
+ * are inserted with JDBC batching, one transaction per chunk and shard. Cards
+ * that already exist are skipped and invalid lines are reported; neither stops
+ * the import.
+ */
+@Service
+public class CardImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CardImportService.class);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO cards (id, card_number, pin_hash, balance, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String NEXT_ID_BLOCK_SQL = "SELECT NEXT VALUE FOR cards_seq";
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final BigDecimal MAX_BALANCE = new BigDecimal("99999999.99");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${banking.import.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${banking.import.threads:0}")
+    private int configuredThreads;
+
+    @Value("${banking.import.progress-interval-rows:100000}")
+    private long progressInterval;
+
+    private ExecutorService hashers;
+    private int threads;
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ImportReport current;
+
+    @PostConstruct
+    public void start() {
+        threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        hashers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "card-import-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        hashers.shutdownNow();
+        hashers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Import cards from CSV lines of card number, PIN and opening balance
+     * @param source The CSV to read; not closed
+     * @return The final import report
+     * @throws IOException If the source cannot be read
+     * @throws IllegalStateException If another import is running
+     */
+    public ImportReport importCards(Reader source) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A card import is already running");
+        }
+
+        ImportReport report = new ImportReport();
+        current = report;
+        try {
+            run(new BufferedReader(source), report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Card import interrupted", e);
+        } finally {
+            report.finish();
+            running.set(false);
+        }
+        logger.info("Card import finished: {} read, {} imported, {} duplicates, {} rejected in {} ms ({} rows/s)",
+            report.getRowsRead(), report.getImported(), report.getDuplicates(), report.getRejected(),
+            report.getElapsedMs(), report.getRowsPerSecond());
+        return report;
+    }
+
+    /**
+     * Get the progress of the running import, or the report of the last one
+     * @return The import report, or null if nothing was imported yet
+     */
+    public ImportReport getReport() {
+        return current;
+    }
+
+    private void run(BufferedReader reader, ImportReport report) throws IOException, InterruptedException {
+        // Keep every hasher busy while the current chunk is inserted
+        int maxInFlight = threads * 2;
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        Chunk chunk = new Chunk(batchSize);
+        long lineNumber = 0;
+        long nextProgress = progressInterval;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || (report.rowsRead == 0 && isHeader(line))) {
+                continue;
+            }
+
+            report.rowsRead++;
+            String error = chunk.add(line);
+            if (error != null) {
+                report.reject(lineNumber, error);
+            }
+            if (chunk.size == batchSize) {
+                Chunk hashing = chunk;
+                inFlight.add(hashers.submit(() -> hashing.hash()));
+                chunk = new Chunk(batchSize);
+                if (inFlight.size() >= maxInFlight) {
+                    insert(await(inFlight.poll()), report);
+                }
+            }
+
+            if (report.rowsRead >= nextProgress) {
+                nextProgress += progressInterval;
+                logger.info("Card import progress: {} read, {} imported ({} rows/s)",
+                    report.rowsRead, report.imported, report.getRowsPerSecond());
+            }
+        }
+
+        if (chunk.size > 0) {
+            Chunk hashing = chunk;
+            inFlight.add(hashers.submit(() -> hashing.hash()));
+        }
+        while (!inFlight.isEmpty()) {
+            insert(await(inFlight.poll()), report);
+        }
+    }
+
+    private void insert(Chunk chunk, ImportReport report) {
+        if (shardRouter.getShardCount() == 1) {
+            insertIntoShard(chunk, report);
+            return;
+        }
+
+        // Split the chunk so each shard gets one batch with ids from its own sequence
+        Chunk[] chunksByShard = new Chunk[shardRouter.getShardCount()];
+        for (int i = 0; i < chunk.size; i++) {
+            int shard = shardRouter.shardFor(chunk.cardNumbers[i]);
+            if (chunksByShard[shard] == null) {
+                chunksByShard[shard] = new Chunk(chunk.size);
+            }
+            chunksByShard[shard].copyRow(chunk, i);
+        }
+        for (int shard = 0; shard < chunksByShard.length; shard++) {
+            Chunk shardChunk = chunksByShard[shard];
+            if (shardChunk != null) {
+                shardRouter.onShard(shard, () -> {
+                    insertIntoShard(shardChunk, report);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private void insertIntoShard(Chunk chunk, ImportReport report) {
+        allocateIds(chunk);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<String, BigDecimal> imported = new LinkedHashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        chunk.bind(statement, i, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size;
+                    }
+                }));
+            for (int i = 0; i < chunk.size; i++) {
+                imported.put(chunk.cardNumbers[i], chunk.balances[i]);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Some cards exist already; insert the chunk row by row and skip them
+            for (int i = 0; i < chunk.size; i++) {
+                int row = i;
+                try {
+                    jdbcTemplate.update(INSERT_SQL, statement -> chunk.bind(statement, row, now));
+                    imported.put(chunk.cardNumbers[i], chunk.balances[i]);
+                } catch (DataIntegrityViolationException duplicate) {
+                    report.duplicates++;
+                }
+            }
+        }
+
+        report.imported += imported.size();
+        if (!imported.isEmpty()) {
+            eventPublisher.publishEvent(new CardsImportedEvent(imported));
+        }
+    }
+
+    /**
+     * Take ids from cards_seq the way Hibernate's pooled optimizer does, one sequence value per block
+     * @param chunk The chunk to assign ids to
+     */
+    private void allocateIds(Chunk chunk) {
+        for (int start = 0; start < chunk.size; start += Card.ID_ALLOCATION_SIZE) {
+            long last = jdbcTemplate.queryForObject(NEXT_ID_BLOCK_SQL, Long.class);
+            long first = last - Card.ID_ALLOCATION_SIZE + 1;
+            for (int i = start; i < Math.min(start + Card.ID_ALLOCATION_SIZE, chunk.size); i++) {
+                chunk.ids[i] = first + i - start;
+            }
+        }
+    }
+
+    private static Chunk await(Future<Chunk> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to hash card PINs", e.getCause());
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        return !Character.isDigit(line.charAt(0));
+    }
+
+    /**
+     * Parsed rows waiting to be hashed and inserted
+     */
+    private static class Chunk {
+        private final long[] ids;
+        private final String[] cardNumbers;
+        private final String[] pins;
+        private final BigDecimal[] balances;
+        private final byte[][] pinHashes;
+        private int size;
+
+        Chunk(int capacity) {
+            ids = new long[capacity];
+            cardNumbers = new String[capacity];
+            pins = new String[capacity];
+            balances = new BigDecimal[capacity];
+            pinHashes = new byte[capacity][];
+        }
+
+        /**
+         * Parse and validate a CSV line
+         * @return The validation error, or null if the row was added
+         */
+        String add(String line) {
+            String[] fields = line.split(",", -1);
+            if (fields.length != 3) {
+                return "Expected cardNumber,pin,balance";
+            }
+            String cardNumber = fields[0].trim();
+            String pin = fields[1].trim();
+            if (cardNumber.length() != BinRoutingTable.CARD_NUMBER_LENGTH || !isDigits(cardNumber)) {
+                return "Card number must be 16 digits";
+            }
+            if (pin.length() != 4 || !isDigits(pin)) {
+                return "PIN must be 4 digits";
+            }
+            BigDecimal balance;
+            try {
+                balance = new BigDecimal(fields[2].trim());
+            } catch (NumberFormatException e) {
+                return "Invalid balance";
+            }
+            if (balance.signum() < 0 || balance.scale() > 2 || balance.compareTo(MAX_BALANCE) > 0) {
+                return "Balance must be between 0 and " + MAX_BALANCE + " with at most 2 decimals";
+            }
+
+            cardNumbers[size] = cardNumber;
+            pins[size] = pin;
+            balances[size] = balance;
+            size++;
+            return null;
+        }
+
+        Chunk hash() {
+            for (int i = 0; i < size; i++) {
+                pinHashes[i] = PinHasher.hashPin(pins[i]);
+                pins[i] = null;
+            }
+            return this;
+        }
+
+        void copyRow(Chunk source, int i) {
+            cardNumbers[size] = source.cardNumbers[i];
+            balances[size] = source.balances[i];
+            pinHashes[size] = source.pinHashes[i];
+            size++;
+        }
+
+        void bind(PreparedStatement statement, int i, Timestamp now) throws SQLException {
+            statement.setLong(1, ids[i]);
+            statement.setString(2, cardNumbers[i]);
+            statement.setBytes(3, pinHashes[i]);
+            statement.setBigDecimal(4, balances[i]);
+            statement.setTimestamp(5, now);
+            statement.setTimestamp(6, now);
+        }
+
+        private static boolean isDigits(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Progress of a running import or the outcome of a finished one
+     */
+    public static class ImportReport {
+        private final long startNanos = System.nanoTime();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        private volatile long rowsRead;
+        private volatile long imported;
+        private volatile long duplicates;
+        private volatile long rejected;
+        private volatile long finishedNanos;
+
+        void reject(long lineNumber, String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + lineNumber + ": " + error);
+            }
+        }
+
+        void finish() {
+            finishedNanos = System.nanoTime();
+        }
+
+        public boolean isRunning() {
+            return finishedNanos == 0;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMs() {
+            long end = finishedNanos == 0 ? System.nanoTime() : finishedNanos;
+            return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        }
+
+        /**
+         * Get the import throughput
+         * @return Rows read per second since the import started
+         */
+        public long getRowsPerSecond() {
+            long elapsedMs = getElapsedMs();
+            return elapsedMs == 0 ? 0 : rowsRead * 1000 / elapsedMs;
+        }
+
+        /**
+         * Get the first rejected lines with their errors
+         * @return At most 100 errors
+         */
+        public List<String> getErrors() {
+            synchronized (errors) {
+                return new ArrayList<>(errors);
+            }
+        }
+    }
+}
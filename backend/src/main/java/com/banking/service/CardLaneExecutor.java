@@ -0,0 +1,164 @@
+package com.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer execution lanes for card balance updates.
+ *
+ * Every card number is hashed onto one of a fixed number of lanes, and each lane
+ * is backed by exactly one thread. All balance mutations for a card therefore run
+ * one after another on the same thread, so the read-check-write in
+ * TransactionProcessorService can never interleave for the same card, while
+ * different cards still proceed in parallel across lanes.
+ */
+@Component
+public class CardLaneExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CardLaneExecutor.class);
+
+    private static final ThreadLocal<Integer> CURRENT_LANE = new ThreadLocal<>();
+
+    @Value("${banking.lanes.enabled:true}")
+    private boolean enabled;
+
+    @Value("${banking.lanes.count:0}")
+    private int configuredLaneCount;
+
+    private ThreadPoolExecutor[] lanes;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Card lanes disabled, balance updates run on the calling thread");
+            return;
+        }
+
+        int laneCount = configuredLaneCount > 0 ? configuredLaneCount : Runtime.getRuntime().availableProcessors();
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final int laneIndex = i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        CURRENT_LANE.set(laneIndex);
+                        runnable.run();
+                    }, "card-lane-" + laneIndex);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+        logger.info("Started {} card lanes", laneCount);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (lanes == null) {
+            return;
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Run a task on the lane owning the card and wait for its result
+     * @param cardNumber The card number the task mutates
+     * @param task The task to run
+     * @return The task result
+     */
+    public <T> T execute(String cardNumber, Supplier<T> task) {
+        if (lanes == null || isOnLane(cardNumber)) {
+            return task.get();
+        }
+
+        try {
+            return submit(cardNumber, task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for card lane", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Queue a task on the lane owning the card
+     * @param cardNumber The card number the task mutates
+     * @param task The task to run
+     * @return Future completed with the task result
+     */
+    public <T> CompletableFuture<T> submit(String cardNumber, Supplier<T> task) {
+        if (lanes == null || isOnLane(cardNumber)) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(task, lanes[laneFor(cardNumber)]);
+    }
+
+    /**
+     * Get the lane index a card number is hashed onto
+     * @param cardNumber The card number
+     * @return The lane index
+     */
+    public int laneFor(String cardNumber) {
+        int laneCount = lanes != null ? lanes.length : 1;
+        return Math.floorMod(cardNumber.hashCode(), laneCount);
+    }
+
+    /**
+     * Get the number of active lanes
+     * @return The lane count, 0 if lanes are disabled
+     */
+    public int getLaneCount() {
+        return lanes != null ? lanes.length : 0;
+    }
+
+    /**
+     * Get the number of tasks waiting on all lanes
+     * @return The queued task count
+     */
+    public int getQueuedTasks() {
+        if (lanes == null) {
+            return 0;
+        }
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    private boolean isOnLane(String cardNumber) {
+        Integer currentLane = CURRENT_LANE.get();
+        return currentLane != null && currentLane == laneFor(cardNumber);
+    }
+
+    private RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new IllegalStateException("Card lane task failed", cause);
+    }
+}
@@ -0,0 +1,235 @@
+package com.banking.service;
+
+import com.banking.event.CardsImportedEvent;
+import com.banking.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory filter of provisioned card numbers, so the gateway can decline
+ * unknown cards without looking them up.
+ *
+ * A Bloom filter never misses a card that was added to it and wrongly passes
+ * an unknown card at about banking.card-filter.false-positive-rate; those
+ * still fail the processor's lookup. The filter is built from the cards table
+ * once the application is ready, reading only the card numbers one page at a
+ * time, gets every card created afterwards (see CardsImportedEvent) and is
+ * rebuilt in the background every rebuild-interval-ms, sized for twice the
+ * cards it is built from. Until the first build completes every card passes.
+ * Cards imported while a rebuild runs are added to both the old and the new
+ * filter, so none is lost when the new one takes over.
+ *
+ * Cards created by another process are only known after the next rebuild; in
+ * deployments where cards are provisioned elsewhere, keep the interval short
+ * or disable the filter.
+ */
+@Component
+public class CardNumberFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CardNumberFilter.class);
+
+    private static final long MIN_EXPECTED_CARDS = 1000;
+
+    @Autowired
+    private ShardedLedger shardedLedger;
+
+    @Value("${banking.card-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${banking.card-filter.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+
+    private volatile Instant lastRebuild;
+    private volatile long lastRebuildMs;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * Check whether a card may exist, counting the check as a rejection if it does not
+     * @param cardNumber The card number
+     * @return false if the card number was certainly never provisioned
+     */
+    public boolean mightExist(String cardNumber) {
+        BloomFilter filter = current;
+        if (filter == null || filter.mightContain(cardNumber)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Build the filter from every card once the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replace the filter with one built from the cards table, dropping the
+     * false positives that accumulate as cards are added
+     */
+    @Scheduled(fixedDelayString = "${banking.card-filter.rebuild-interval-ms:3600000}",
+        initialDelayString = "${banking.card-filter.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long expected = Math.max(MIN_EXPECTED_CARDS, shardedLedger.countCards() * 2);
+        BloomFilter filter = new BloomFilter(expected, falsePositiveRate);
+
+        // Set before reading the cards: an import committed after this point reaches the new filter
+        building = filter;
+        long cards = shardedLedger.forEachCardNumber(filter::put);
+        current = filter;
+        building = null;
+
+        lastRebuild = Instant.now();
+        lastRebuildMs = System.currentTimeMillis() - start;
+        rebuilds.increment();
+        logger.info("Card number filter built from {} cards: {} KB, {} hash functions, in {} ms",
+            cards, filter.getMemoryBytes() / 1024, filter.getHashCount(), lastRebuildMs);
+    }
+
+    /**
+     * Add newly created cards
+     * @param event The created cards
+     */
+    @EventListener
+    public void onCardsImported(CardsImportedEvent event) {
+        BloomFilter filter = current;
+        BloomFilter next = building;
+        for (String cardNumber : event.getBalances().keySet()) {
+            if (filter != null) {
+                filter.put(cardNumber);
+            }
+            if (next != null && next != filter) {
+                next.put(cardNumber);
+            }
+        }
+    }
+
+    /**
+     * Get the size and accuracy of the filter
+     * @return The filter statistics
+     */
+    public FilterStats getStats() {
+        BloomFilter filter = current;
+        if (filter == null) {
+            return new FilterStats(enabled, false, 0, 0, 0, 0, 0, falsePositiveRate, 0, rejected.sum(),
+                rebuilds.sum(), lastRebuild, lastRebuildMs);
+        }
+        return new FilterStats(enabled, true, filter.getEntries(), filter.getExpectedEntries(), filter.getBitCount(),
+            filter.getHashCount(), filter.getMemoryBytes(), falsePositiveRate, filter.estimatedFalsePositiveRate(),
+            rejected.sum(), rebuilds.sum(), lastRebuild, lastRebuildMs);
+    }
+
+    /**
+     * Point-in-time view of the card number filter
+     */
+    public static class FilterStats {
+        private final boolean enabled;
+        private final boolean ready;
+        private final long cards;
+        private final long capacity;
+        private final long bits;
+        private final int hashFunctions;
+        private final long memoryBytes;
+        private final double targetFalsePositiveRate;
+        private final double estimatedFalsePositiveRate;
+        private final long rejected;
+        private final long rebuilds;
+        private final Instant lastRebuild;
+        private final long lastRebuildMs;
+
+        public FilterStats(boolean enabled, boolean ready, long cards, long capacity, long bits, int hashFunctions,
+                           long memoryBytes, double targetFalsePositiveRate, double estimatedFalsePositiveRate,
+                           long rejected, long rebuilds, Instant lastRebuild, long lastRebuildMs) {
+            this.enabled = enabled;
+            this.ready = ready;
+            this.cards = cards;
+            this.capacity = capacity;
+            this.bits = bits;
+            this.hashFunctions = hashFunctions;
+            this.memoryBytes = memoryBytes;
+            this.targetFalsePositiveRate = targetFalsePositiveRate;
+            this.estimatedFalsePositiveRate = estimatedFalsePositiveRate;
+            this.rejected = rejected;
+            this.rebuilds = rebuilds;
+            this.lastRebuild = lastRebuild;
+            this.lastRebuildMs = lastRebuildMs;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * @return false until the first build completes; every card passes until then
+         */
+        public boolean isReady() {
+            return ready;
+        }
+
+        public long getCards() {
+            return cards;
+        }
+
+        public long getCapacity() {
+            return capacity;
+        }
+
+        public long getBits() {
+            return bits;
+        }
+
+        public int getHashFunctions() {
+            return hashFunctions;
+        }
+
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        public double getTargetFalsePositiveRate() {
+            return targetFalsePositiveRate;
+        }
+
+        public double getEstimatedFalsePositiveRate() {
+            return estimatedFalsePositiveRate;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getRebuilds() {
+            return rebuilds;
+        }
+
+        public Instant getLastRebuild() {
+            return lastRebuild;
+        }
+
+        public long getLastRebuildMs() {
+            return lastRebuildMs;
+        }
+    }
+}
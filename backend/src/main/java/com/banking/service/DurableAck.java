@@ -0,0 +1,121 @@
+package com.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Hands the durability waits of work committed on a card lane to the caller
+ * that acknowledges it.
+ *
+ * The audit writer and the ledger journal make commits durable on their own
+ * threads, grouping every commit that arrived in the meantime into one flush.
+ * A lane that waited for its own flush could add only one commit to each
+ * group, so work run through capture() registers its waits instead: the lane
+ * moves on to the card's next request while the caller waits before
+ * responding. Code that is not running inside capture() gets false from
+ * defer() and waits itself.
+ */
+public final class DurableAck {
+
+    private static final Logger logger = LoggerFactory.getLogger(DurableAck.class);
+
+    private static final ThreadLocal<List<CompletableFuture<?>>> WAITS = new ThreadLocal<>();
+
+    private DurableAck() {
+    }
+
+    /**
+     * Run a task, collecting the durability waits registered while it runs.
+     * Inside another capture the waits go to the outer one.
+     * @param task The task to run
+     * @return The task result with the collected waits
+     */
+    public static <T> Captured<T> capture(Supplier<T> task) {
+        if (WAITS.get() != null) {
+            return new Captured<>(task.get(), Collections.emptyList());
+        }
+        List<CompletableFuture<?>> waits = new ArrayList<>();
+        WAITS.set(waits);
+        try {
+            return new Captured<>(task.get(), waits);
+        } finally {
+            WAITS.remove();
+        }
+    }
+
+    /**
+     * Leave a durability wait to the surrounding capture
+     * @param durable Completes once the work is durable; must fail by itself after a bounded time
+     * @return true if a capture took the wait, false if the caller has to wait itself
+     */
+    public static boolean defer(CompletableFuture<?> durable) {
+        List<CompletableFuture<?>> waits = WAITS.get();
+        if (waits == null) {
+            return false;
+        }
+        waits.add(durable);
+        return true;
+    }
+
+    /**
+     * Result of a captured task with the durability waits it left behind
+     */
+    public static class Captured<T> {
+        private final T result;
+        private final List<CompletableFuture<?>> waits;
+
+        Captured(T result, List<CompletableFuture<?>> waits) {
+            this.result = result;
+            this.waits = waits;
+        }
+
+        /**
+         * Wait on the calling thread until the work is durable
+         * @return The task result
+         */
+        public T await() {
+            if (!waits.isEmpty()) {
+                try {
+                    all().join();
+                } catch (CompletionException e) {
+                    logNotDurable(e);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Get a future completed with the task result once the work is durable. Dependent
+         * stages run on the common pool, never on the threads that flush.
+         * @return Future completed with the task result
+         */
+        public CompletableFuture<T> whenDurable() {
+            if (waits.isEmpty()) {
+                return CompletableFuture.completedFuture(result);
+            }
+            return all().handleAsync((ignored, error) -> {
+                if (error != null) {
+                    logNotDurable(error);
+                }
+                return result;
+            });
+        }
+
+        private CompletableFuture<Void> all() {
+            return CompletableFuture.allOf(waits.toArray(new CompletableFuture<?>[0]));
+        }
+
+        // The work is committed and must be acknowledged as such; the flushing side counts what it failed to write
+        private static void logNotDurable(Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            logger.warn("Acknowledging committed work that is not confirmed durable: {}", cause.toString());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.model.IdempotencyRecord;
+import com.banking.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates transaction retries carrying an Idempotency-Key header.
+ *
+ * The first response for a key is kept in a bounded in-memory LRU cache and
+ * persisted with an expiry, so a retry is answered with the stored response
+ * without touching the card or the ledger, also after a restart. Concurrent
+ * requests with the same key wait for the one in flight instead of executing
+ * again. A key reused for a different request is rejected. A response whose
+ * outcome is unknown is not kept, so a retry runs again; processor nodes
+ * reached over the binary link receive the key and answer such a retry with
+ * the outcome of the first attempt. A decline caused by the PIN is not kept
+ * either, since the PIN is not part of the request fingerprint and a retry
+ * with the correct PIN must be processed.
+ */
+@Service
+public class IdempotencyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    
+    /**
+     * Maximum length of an Idempotency-Key header value
+     */
+    public static final int MAX_KEY_LENGTH = 128;
+    
+    /**
+     * Response to a key that was first used with a different request
+     */
+    public static final String KEY_REUSED_MESSAGE = "Idempotency-Key was already used for a different request";
+    
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${banking.idempotency.cache-size:10000}")
+    private int cacheSize;
+    
+    @Value("${banking.idempotency.ttl-hours:24}")
+    private long ttlHours;
+    
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    
+    private Map<String, StoredResponse> cache;
+    
+    @PostConstruct
+    public void init() {
+        cache = new LinkedHashMap<String, StoredResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    /**
+     * Check an Idempotency-Key header value
+     * @param idempotencyKey The header value
+     * @return true if the key can be used, false otherwise
+     */
+    public boolean isValidKey(String idempotencyKey) {
+        return !idempotencyKey.isBlank() && idempotencyKey.length() <= MAX_KEY_LENGTH;
+    }
+    
+    /**
+     * Run a transaction at most once per idempotency key
+     * @param idempotencyKey The idempotency key, or null to always run the transaction
+     * @param request The transaction request the key was sent with
+     * @param task Processes the transaction
+     * @return The response of the first execution for the key
+     */
+    public TransactionResponse execute(String idempotencyKey, TransactionRequest request, Supplier<TransactionResponse> task) {
+        if (idempotencyKey == null) {
+            return task.get();
+        }
+        String fingerprint = fingerprint(request);
+        // Sent on to processor nodes, which answer a retry of a request they already ran with its first response
+        request.setIdempotencyKey(idempotencyKey);
+        
+        StoredResponse cached = getCached(idempotencyKey);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+        
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(idempotencyKey, execution);
+        if (running != null) {
+            // Same key in flight: wait for its result instead of executing twice
+            try {
+                return replay(running.join(), fingerprint);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        
+        try {
+            StoredResponse stored = getCached(idempotencyKey);
+            if (stored == null) {
+                stored = load(idempotencyKey);
+            }
+            if (stored != null) {
+                execution.complete(stored);
+                return replay(stored, fingerprint);
+            }
+            
+            TransactionResponse response = task.get();
+            if (!isReplayable(response)) {
+                // Not final: a retry with the key must run again
+                execution.complete(new StoredResponse(fingerprint, response, LocalDateTime.now()));
+                return response;
+            }
+            stored = new StoredResponse(fingerprint, response, LocalDateTime.now().plusHours(ttlHours));
+            store(idempotencyKey, stored);
+            execution.complete(stored);
+            return response;
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, execution);
+        }
+    }
+    
+    /**
+     * Delete expired responses from the cache and the database
+     */
+    @Scheduled(fixedDelayString = "${banking.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            cache.values().removeIf(stored -> !stored.expiresAt.isAfter(now));
+        }
+        int deleted = idempotencyRecordRepository.deleteExpired(now);
+        if (deleted > 0) {
+            logger.debug("Purged {} expired idempotency keys", deleted);
+        }
+    }
+    
+    private synchronized StoredResponse getCached(String idempotencyKey) {
+        StoredResponse stored = cache.get(idempotencyKey);
+        if (stored != null && !stored.expiresAt.isAfter(LocalDateTime.now())) {
+            cache.remove(idempotencyKey);
+            return null;
+        }
+        return stored;
+    }
+    
+    private StoredResponse load(String idempotencyKey) {
+        Optional<IdempotencyRecord> record = idempotencyRecordRepository
+            .findByIdempotencyKeyAndExpiresAtAfter(idempotencyKey, LocalDateTime.now());
+        if (record.isEmpty()) {
+            return null;
+        }
+        try {
+            StoredResponse stored = new StoredResponse(record.get().getRequestFingerprint(),
+                objectMapper.readValue(record.get().getResponse(), TransactionResponse.class),
+                record.get().getExpiresAt());
+            synchronized (this) {
+                cache.put(idempotencyKey, stored);
+            }
+            return stored;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response for idempotency key is unreadable", e);
+        }
+    }
+    
+    private void store(String idempotencyKey, StoredResponse stored) {
+        synchronized (this) {
+            cache.put(idempotencyKey, stored);
+        }
+        // The transaction has already been applied, so a failed write only loses restart durability
+        try {
+            idempotencyRecordRepository.save(new IdempotencyRecord(idempotencyKey, stored.fingerprint,
+                objectMapper.writeValueAsString(stored.response), stored.expiresAt));
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.error("Failed to persist response for idempotency key {}", idempotencyKey, e);
+        }
+    }
+    
+    private TransactionResponse replay(StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint.equals(fingerprint)) {
+            return new TransactionResponse(false, KEY_REUSED_MESSAGE);
+        }
+        return stored.response;
+    }
+    
+    /**
+     * Tell whether a response may answer later retries with the same key. An unknown
+     * outcome may still be settled by the processor, and a wrong PIN or locked card
+     * decline applied nothing and depends on the PIN, which the fingerprint leaves out.
+     * @param response The first response for a key
+     * @return true if the response is final for the key
+     */
+    static boolean isReplayable(TransactionResponse response) {
+        String message = response.getMessage();
+        return !ProcessorClient.OUTCOME_UNKNOWN.equals(message)
+            && !TransactionProcessorService.INVALID_PIN_MESSAGE.equals(message)
+            && !PinAttemptTracker.LOCKED_MESSAGE.equals(message);
+    }
+    
+    /**
+     * Identify a request by its card, type and amount; the PIN is deliberately left out
+     */
+    static String fingerprint(TransactionRequest request) {
+        return request.getCardNumber() + ":" + request.getType() + ":"
+            + (request.getAmount() == null ? "" : request.getAmount().stripTrailingZeros().toPlainString());
+    }
+    
+    private static class StoredResponse {
+        private final String fingerprint;
+        private final TransactionResponse response;
+        private final LocalDateTime expiresAt;
+        
+        StoredResponse(String fingerprint, TransactionResponse response, LocalDateTime expiresAt) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the processor in this process, on the lane and the database shard that
+ * own the card. Used by single-node deployments and by processor nodes to
+ * serve requests arriving over the binary link. The lane only commits; the
+ * wait for the audit flush and the ledger sync happens after the lane has
+ * moved on, before the response is handed back.
+ */
+@Component
+public class InProcessProcessorClient implements ProcessorClient {
+    
+    @Autowired
+    private TransactionProcessorService transactionProcessorService;
+    
+    @Autowired
+    private CardLaneExecutor cardLaneExecutor;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Override
+    public TransactionResponse process(TransactionRequest request) {
+        String cardNumber = request.getCardNumber();
+        return cardLaneExecutor.execute(cardNumber, () -> DurableAck.capture(
+            () -> shardRouter.onCard(cardNumber, () -> transactionProcessorService.processTransaction(request))))
+            .await();
+    }
+    
+    @Override
+    public CompletableFuture<List<TransactionResponse>> submit(String cardNumber, List<TransactionRequest> requests) {
+        return cardLaneExecutor.submit(cardNumber, () -> DurableAck.capture(
+            () -> shardRouter.onCard(cardNumber, () -> transactionProcessorService.processCardTransactions(cardNumber, requests))))
+            .thenCompose(DurableAck.Captured::whenDurable);
+    }
+}
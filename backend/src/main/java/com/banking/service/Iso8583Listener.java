@@ -0,0 +1,344 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionResponse;
+import com.banking.util.Iso8583Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP listener for terminal and switch traffic in the ISO 8583 subset of
+ * Iso8583Codec, enabled with banking.iso8583.enabled.
+ *
+ * One selector thread serves every connection. Messages are decoded in place
+ * from each connection's direct read buffer and handed to the gateway on the
+ * bounded transaction pool, like requests to /api/transaction, so the selector
+ * never waits for a transaction. Responses are encoded into the connection's
+ * direct write buffer as they complete, matched to their requests by STAN, and
+ * may therefore leave in a different order than the requests arrived. A
+ * connection stops being read while banking.iso8583.max-in-flight of its
+ * requests are still being processed.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.iso8583.enabled", havingValue = "true")
+public class Iso8583Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(Iso8583Listener.class);
+
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 16 * 1024;
+    private static final int MAX_RESPONSE_BYTES = 64;
+
+    @Autowired
+    private TransactionGatewayService transactionGatewayService;
+
+    @Autowired
+    private TransactionAdmissionExecutor transactionAdmissionExecutor;
+
+    @Value("${banking.iso8583.port:8583}")
+    private int port;
+
+    @Value("${banking.iso8583.bind-address:0.0.0.0}")
+    private String bindAddress;
+
+    @Value("${banking.iso8583.max-in-flight:64}")
+    private int maxInFlight;
+
+    private final Queue<Connection> readyToWrite = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder formatErrors = new LongAdder();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(bindAddress, port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        selectorThread = new Thread(this::selectLoop, "iso8583-listener");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        logger.info("ISO 8583 listener on port {}", getPort());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        selector.wakeup();
+        selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Get the port the listener accepts connections on
+     * @return The local port, chosen by the system when configured as 0
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of open terminal connections
+     * @return The connection count
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Get the number of messages received
+     * @return The message count
+     */
+    public long getMessageCount() {
+        return messages.sum();
+    }
+
+    /**
+     * Get the number of messages answered with a format error
+     * @return The format error count
+     */
+    public long getFormatErrorCount() {
+        return formatErrors.sum();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Connection connection;
+                while ((connection = readyToWrite.poll()) != null) {
+                    connection.flush();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    logger.error("ISO 8583 listener failed", e);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connectionCount.incrementAndGet();
+        logger.debug("Terminal connection from {} opened", channel.getRemoteAddress());
+    }
+
+    /**
+     * One terminal connection. Only the selector thread touches its buffers.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private final Queue<Completed> completed = new ConcurrentLinkedQueue<>();
+        private SelectionKey key;
+        private int inFlight;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                logger.debug("Terminal connection failed while reading: {}", e.getMessage());
+                close();
+                return;
+            }
+            decodeMessages();
+        }
+
+        /**
+         * Decode and dispatch every complete message in the read buffer, up to the in-flight limit
+         */
+        private void decodeMessages() {
+            readBuffer.flip();
+            while (inFlight < maxInFlight && readBuffer.remaining() >= Iso8583Codec.LENGTH_HEADER_BYTES) {
+                int start = readBuffer.position();
+                int length = readBuffer.getShort(start) & 0xFFFF;
+                if (length == 0 || length > Iso8583Codec.MAX_MESSAGE_BYTES) {
+                    // Without a trustworthy length the stream cannot be resynchronized
+                    logger.warn("Closing terminal connection after a message length of {}", length);
+                    close();
+                    return;
+                }
+                int end = start + Iso8583Codec.LENGTH_HEADER_BYTES + length;
+                if (readBuffer.limit() < end) {
+                    break;
+                }
+
+                int limit = readBuffer.limit();
+                readBuffer.position(start + Iso8583Codec.LENGTH_HEADER_BYTES).limit(end);
+                Iso8583Codec.Request request = Iso8583Codec.decodeRequest(readBuffer);
+                readBuffer.limit(limit).position(end);
+                dispatch(request);
+            }
+            readBuffer.compact();
+
+            int interest = key.interestOps();
+            key.interestOps(inFlight < maxInFlight ? interest | SelectionKey.OP_READ : interest & ~SelectionKey.OP_READ);
+        }
+
+        private void dispatch(Iso8583Codec.Request request) {
+            messages.increment();
+            inFlight++;
+            if (request.getFormatError() != null) {
+                formatErrors.increment();
+                logger.debug("Format error in message with STAN {}: {}", request.getStan(), request.getFormatError());
+                complete(request, null);
+                return;
+            }
+            try {
+                transactionAdmissionExecutor
+                    .submit(() -> transactionGatewayService.processTransaction(request.getTransactionRequest()))
+                    .whenComplete((entity, error) -> {
+                        if (error != null) {
+                            logger.error("Transaction with STAN {} failed", request.getStan(), error);
+                        }
+                        complete(request, error == null ? entity.getBody() : null);
+                    });
+            } catch (RuntimeException e) {
+                // Thrown here when the transaction pool is disabled and the transaction ran inline
+                logger.error("Transaction with STAN {} failed", request.getStan(), e);
+                complete(request, null);
+            }
+        }
+
+        private void complete(Iso8583Codec.Request request, TransactionResponse response) {
+            completed.add(new Completed(request, response));
+            readyToWrite.add(this);
+            selector.wakeup();
+        }
+
+        void flush() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                while (true) {
+                    Completed next;
+                    while (writeBuffer.remaining() >= MAX_RESPONSE_BYTES && (next = completed.poll()) != null) {
+                        encode(next);
+                        inFlight--;
+                    }
+                    writeBuffer.flip();
+                    channel.write(writeBuffer);
+                    boolean partial = writeBuffer.hasRemaining();
+                    writeBuffer.compact();
+                    if (partial) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    if (completed.isEmpty()) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Terminal connection failed while writing: {}", e.getMessage());
+                close();
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+
+            // Messages held back by the in-flight limit can go now
+            if (inFlight < maxInFlight && (key.interestOps() & SelectionKey.OP_READ) == 0) {
+                decodeMessages();
+            }
+        }
+
+        private void encode(Completed next) {
+            int start = writeBuffer.position();
+            try {
+                Iso8583Codec.encodeResponse(writeBuffer, next.request, next.response);
+            } catch (IllegalArgumentException e) {
+                logger.error("Could not encode the response to STAN {}: {}", next.request.getStan(), e.getMessage());
+                writeBuffer.position(start);
+                Iso8583Codec.encodeResponse(writeBuffer, next.request, null);
+            }
+        }
+
+        private void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Error closing terminal connection", e);
+            }
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    private static class Completed {
+        private final Iso8583Codec.Request request;
+        private final TransactionResponse response;
+
+        Completed(Iso8583Codec.Request request, TransactionResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.banking.service;
+
+import com.banking.event.BalanceChangedEvent;
+import com.banking.event.CardsImportedEvent;
+import com.banking.model.Card;
+import com.banking.repository.CardRepository;
+import com.banking.util.LedgerCardLog;
+import com.banking.util.LedgerJournal;
+import com.banking.util.LedgerSnapshot;
+import com.banking.util.LedgerState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable journal of card balances kept next to the database.
+ *
+ * Every committed balance change is appended to a memory-mapped journal and
+ * a flusher thread syncs it to disk every few milliseconds, so one fsync
+ * covers all changes appended in between. Snapshots of the balance read model
+ * bound the journal that has to be replayed. Every card created meanwhile is
+ * also written to a card log. On startup, cards from the log that the database
+ * lacks are recreated. Then the latest snapshot and the journal tail are loaded
+ * and written back to the cards table. Together these let cards and balances
+ * survive a restart of the in-memory database.
+ */
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "banking.ledger.enabled", havingValue = "true")
+public class LedgerService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerService.class);
+
+    private static final int RESTORE_BATCH_SIZE = 1000;
+    private static final long DURABLE_WAIT_TIMEOUT_MS = 30000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardCache cardCache;
+
+    @Autowired
+    private BalanceReadModel balanceReadModel;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Value("${banking.ledger.directory:./data/ledger}")
+    private String directory;
+
+    @Value("${banking.ledger.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${banking.ledger.fsync-interval-ms:2}")
+    private long fsyncIntervalMs;
+
+    @Value("${banking.ledger.durability:FLUSH}")
+    private TransactionAuditWriter.Durability durability;
+
+    private Path path;
+    private LedgerJournal journal;
+    private LedgerCardLog cardLog;
+    private LedgerState recovered;
+    private Thread flusher;
+    private volatile boolean running;
+    private long snapshotSequence = -1;
+
+    private final Object durableLock = new Object();
+    private long durableSequence;
+    // Futures of appended records by sequence, completed by the flusher once synced
+    private final TreeMap<Long, CompletableFuture<Void>> durableWaiters = new TreeMap<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        path = Paths.get(directory);
+        long startNanos = System.nanoTime();
+        recovered = LedgerState.recover(path);
+        logger.info("Recovered {} card balances up to ledger sequence {} in {} ms",
+            recovered.size(), recovered.getSequence(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        journal = LedgerJournal.open(path, recovered.getSequence() + 1, segmentSizeMb * 1024 * 1024);
+        cardLog = LedgerCardLog.open(path);
+        durableSequence = recovered.getSequence();
+        running = true;
+        flusher = new Thread(this::flushLoop, "ledger-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        journal.close();
+        cardLog.close();
+    }
+
+    /**
+     * Recreate the logged cards the database lacks and write the recovered balances back to the cards table
+     * @param args The application arguments
+     * @throws IOException If the card log cannot be read
+     */
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        recreateCards();
+        if (recovered.size() == 0) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<List<Object[]>> batches = new ArrayList<>(shardRouter.getShardCount());
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            batches.add(new ArrayList<>(RESTORE_BATCH_SIZE));
+        }
+        long[] missing = new long[1];
+        recovered.forEach((cardKey, cents) -> {
+            String cardNumber = LedgerJournal.toCardNumber(cardKey);
+            int shard = shardRouter.shardFor(cardNumber);
+            List<Object[]> batch = batches.get(shard);
+            batch.add(new Object[] {BigDecimal.valueOf(cents, 2), now, cardNumber});
+            if (batch.size() == RESTORE_BATCH_SIZE) {
+                missing[0] += restore(shard, batch);
+            }
+        });
+        for (int shard = 0; shard < batches.size(); shard++) {
+            missing[0] += restore(shard, batches.get(shard));
+        }
+        cardCache.invalidateAll();
+        logger.info("Restored {} card balances from the ledger", recovered.size() - missing[0]);
+        if (missing[0] > 0) {
+            logger.warn("Dropped {} journaled card balances whose cards are neither in the database nor in the card log",
+                missing[0]);
+        }
+        recovered = null;
+    }
+
+    /**
+     * Journal a committed balance change; runs after the balance read model has applied it.
+     * With FLUSH durability the wait for the sync is left to the caller of the card lane
+     * when the change was made inside a DurableAck capture, so the lane's next change can
+     * share the same fsync.
+     * @param event The balance change
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) throws InterruptedException {
+        long sequence = journal.append(LedgerJournal.toCardKey(event.getCardNumber()), toCents(event.getBalance()));
+        if (durability == TransactionAuditWriter.Durability.FLUSH
+                && !DurableAck.defer(whenDurable(sequence).orTimeout(DURABLE_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS))) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Log newly created cards so a restart can recreate them
+     * @param event The created cards with their opening balances
+     */
+    @EventListener
+    public void onCardsImported(CardsImportedEvent event) {
+        Map<Integer, List<String>> cardNumbersByShard = new LinkedHashMap<>();
+        for (String cardNumber : event.getBalances().keySet()) {
+            cardNumbersByShard.computeIfAbsent(shardRouter.shardFor(cardNumber), shard -> new ArrayList<>()).add(cardNumber);
+        }
+        // The event carries no PIN hashes; read them back from the rows just committed
+        cardNumbersByShard.forEach((shard, cardNumbers) -> {
+            List<Card> cards = shardRouter.onShard(shard, () -> cardRepository.findByCardNumberIn(cardNumbers));
+            for (Card card : cards) {
+                BigDecimal opening = event.getBalances().get(card.getCardNumber());
+                cardLog.append(LedgerJournal.toCardKey(card.getCardNumber()), toCents(opening), card.getPinHash());
+            }
+        });
+        cardLog.force();
+    }
+
+    /**
+     * Snapshot the balance read model and delete the journal segments it covers
+     * @throws IOException If the snapshot cannot be written
+     */
+    @Scheduled(fixedDelayString = "${banking.ledger.snapshot-interval-ms:300000}",
+        initialDelayString = "${banking.ledger.snapshot-interval-ms:300000}")
+    public void snapshot() throws IOException {
+        // Every change up to this sequence is already in the read model
+        long sequence = journal.getAppendedSequence();
+        if (sequence == snapshotSequence) {
+            return;
+        }
+        try {
+            LedgerSnapshot.write(path, sequence, writer -> balanceReadModel.forEach((cardNumber, balance) -> {
+                try {
+                    writer.write(LedgerJournal.toCardKey(cardNumber), toCents(balance));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        LedgerJournal.deleteSegmentsBefore(path, sequence);
+        snapshotSequence = sequence;
+        logger.info("Wrote ledger snapshot at sequence {}", sequence);
+    }
+
+    /**
+     * Get the sequence number of the last record synced to disk
+     * @return The durable sequence
+     */
+    public long getDurableSequence() {
+        synchronized (durableLock) {
+            return durableSequence;
+        }
+    }
+
+    private CompletableFuture<Void> whenDurable(long sequence) {
+        synchronized (durableLock) {
+            if (durableSequence >= sequence) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return durableWaiters.computeIfAbsent(sequence, key -> new CompletableFuture<>());
+        }
+    }
+
+    private void awaitDurable(long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DURABLE_WAIT_TIMEOUT_MS;
+        synchronized (durableLock) {
+            while (durableSequence < sequence) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Timed out waiting for the ledger journal to sync");
+                }
+                durableLock.wait(remaining);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(fsyncIntervalMs);
+            } catch (InterruptedException e) {
+                // Stopping; sync whatever is left below
+            }
+            if (journal.getAppendedSequence() > getDurableSequence()) {
+                try {
+                    long synced = journal.force();
+                    List<CompletableFuture<Void>> released;
+                    synchronized (durableLock) {
+                        durableSequence = synced;
+                        durableLock.notifyAll();
+                        Map<Long, CompletableFuture<Void>> syncedWaiters = durableWaiters.headMap(synced, true);
+                        released = new ArrayList<>(syncedWaiters.values());
+                        syncedWaiters.clear();
+                    }
+                    // Completed outside the lock so waiters never run while it is held
+                    released.forEach(waiter -> waiter.complete(null));
+                } catch (RuntimeException e) {
+                    logger.error("Failed to sync the ledger journal", e);
+                }
+            }
+        }
+    }
+
+    // Returns the number of balances whose card does not exist
+    private int restore(int shard, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int[] counts = shardRouter.onShard(shard, () ->
+            jdbcTemplate.batchUpdate("UPDATE cards SET balance = ?, updated_at = ? WHERE card_number = ?", batch));
+        batch.clear();
+        int missing = 0;
+        for (int count : counts) {
+            if (count == 0) {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    private void recreateCards() throws IOException {
+        List<Map<String, Card>> batches = new ArrayList<>(shardRouter.getShardCount());
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            batches.add(new LinkedHashMap<>());
+        }
+        long[] recreated = new long[1];
+        long logged = cardLog.replay((cardKey, cents, pinHash) -> {
+            String cardNumber = LedgerJournal.toCardNumber(cardKey);
+            int shard = shardRouter.shardFor(cardNumber);
+            Map<String, Card> batch = batches.get(shard);
+            batch.putIfAbsent(cardNumber, new Card(cardNumber, pinHash, BigDecimal.valueOf(cents, 2)));
+            if (batch.size() == RESTORE_BATCH_SIZE) {
+                recreated[0] += recreate(shard, batch);
+            }
+        });
+        for (int shard = 0; shard < batches.size(); shard++) {
+            recreated[0] += recreate(shard, batches.get(shard));
+        }
+        if (recreated[0] > 0) {
+            logger.info("Recreated {} cards from the ledger card log of {} cards", recreated[0], logged);
+        }
+    }
+
+    // Saves the cards of the batch that do not exist yet and returns how many were saved
+    private int recreate(int shard, Map<String, Card> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int saved = shardRouter.onShard(shard, () -> {
+            Set<String> existing = new HashSet<>(cardRepository.findExistingCardNumbers(batch.keySet()));
+            List<Card> missing = new ArrayList<>();
+            for (Card card : batch.values()) {
+                if (!existing.contains(card.getCardNumber())) {
+                    missing.add(card);
+                }
+            }
+            cardRepository.saveAll(missing);
+            return missing.size();
+        });
+        batch.clear();
+        return saved;
+    }
+
+    private static long toCents(BigDecimal balance) {
+        return balance.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
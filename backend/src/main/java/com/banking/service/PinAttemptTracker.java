@@ -0,0 +1,397 @@
+package com.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Failed PIN attempts per card, with temporary lockout.
+ *
+ * Each tracked card keeps the times of its last max-attempts failures in a
+ * small ring of atomics, so the number of failures inside the sliding window
+ * is known exactly without locks. Reaching max-attempts within window-seconds
+ * locks the card for lockout-seconds; a locked card is declined before it is
+ * looked up, its PIN hashed or an audit row written. A correct PIN forgets the
+ * card's failures. At most max-cards cards are tracked: entries with no recent
+ * failure and no lock are purged periodically, and when the table is full the
+ * least recently failed unlocked entry of a small sample is evicted.
+ *
+ * Lockouts are kept in memory per process; they do not survive a restart and
+ * are not shared between processor nodes. Failures are recorded where the PIN
+ * is verified, so with banking.processor.transport=binary the processor nodes
+ * track and enforce lockouts and the gateway's own check never fires.
+ */
+@Component
+public class PinAttemptTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinAttemptTracker.class);
+
+    public static final String LOCKED_MESSAGE = "Card temporarily locked";
+
+    private static final int EVICTION_SAMPLE = 16;
+
+    @Value("${banking.pin-lockout.enabled:true}")
+    private boolean enabled;
+
+    @Value("${banking.pin-lockout.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${banking.pin-lockout.window-seconds:300}")
+    private long windowSeconds;
+
+    @Value("${banking.pin-lockout.lockout-seconds:900}")
+    private long lockoutSeconds;
+
+    @Value("${banking.pin-lockout.max-cards:100000}")
+    private int maxCards;
+
+    private long windowMs;
+    private long lockoutMs;
+
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder lockouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (maxAttempts < 1) {
+            throw new IllegalStateException("banking.pin-lockout.max-attempts must be at least 1");
+        }
+        windowMs = TimeUnit.SECONDS.toMillis(windowSeconds);
+        lockoutMs = TimeUnit.SECONDS.toMillis(lockoutSeconds);
+        if (enabled) {
+            logger.info("Locking cards for {} s after {} failed PINs within {} s", lockoutSeconds, maxAttempts, windowSeconds);
+        }
+    }
+
+    /**
+     * Check whether a card is locked, counting the check as a rejection if it is
+     * @param cardNumber The card number
+     * @return true if requests for the card must be declined
+     */
+    public boolean rejectIfLocked(String cardNumber) {
+        if (!enabled) {
+            return false;
+        }
+        Attempts entry = attempts.get(cardNumber);
+        if (entry == null || entry.lockedUntil.get() <= System.currentTimeMillis()) {
+            return false;
+        }
+        rejected.increment();
+        return true;
+    }
+
+    /**
+     * Record a wrong PIN for a card
+     * @param cardNumber The card number
+     * @return true if this failure locked the card
+     */
+    public boolean recordFailure(String cardNumber) {
+        if (!enabled) {
+            return false;
+        }
+        failures.increment();
+        Attempts entry = attempts.get(cardNumber);
+        if (entry == null) {
+            if (attempts.size() >= maxCards && !makeRoom()) {
+                untracked.increment();
+                return false;
+            }
+            entry = attempts.computeIfAbsent(cardNumber, key -> new Attempts(maxAttempts));
+        }
+
+        long now = System.currentTimeMillis();
+        int slot = Math.floorMod(entry.next.getAndIncrement(), maxAttempts);
+        entry.failures.set(slot, now);
+        entry.lastFailure.accumulateAndGet(now, Math::max);
+        if (entry.recentFailures(now, windowMs) < maxAttempts) {
+            return false;
+        }
+
+        long lockedUntil = now + lockoutMs;
+        long previous = entry.lockedUntil.getAndAccumulate(lockedUntil, Math::max);
+        if (previous > now) {
+            return false;
+        }
+        lockouts.increment();
+        logger.warn("Card {} locked until {} after {} failed PINs", mask(cardNumber), Instant.ofEpochMilli(lockedUntil), maxAttempts);
+        return true;
+    }
+
+    /**
+     * Record a correct PIN, which forgets the card's failures unless it is locked
+     * @param cardNumber The card number
+     */
+    public void recordSuccess(String cardNumber) {
+        if (!enabled) {
+            return;
+        }
+        Attempts entry = attempts.get(cardNumber);
+        if (entry != null && entry.lockedUntil.get() <= System.currentTimeMillis()) {
+            attempts.remove(cardNumber, entry);
+        }
+    }
+
+    /**
+     * Lift the lock of a card and forget its failures
+     * @param cardNumber The card number
+     * @return true if the card was tracked
+     */
+    public boolean unlock(String cardNumber) {
+        return attempts.remove(cardNumber) != null;
+    }
+
+    /**
+     * Get the cards that are currently locked
+     * @return The locked cards, the longest locked first
+     */
+    public List<CardStatus> getLockedCards() {
+        long now = System.currentTimeMillis();
+        List<CardStatus> locked = new ArrayList<>();
+        for (Map.Entry<String, Attempts> entry : attempts.entrySet()) {
+            if (entry.getValue().lockedUntil.get() > now) {
+                locked.add(statusOf(entry.getKey(), entry.getValue(), now));
+            }
+        }
+        locked.sort(Comparator.comparing(CardStatus::getLockedUntil).reversed());
+        return locked;
+    }
+
+    /**
+     * Get the failed PINs and lock of one card
+     * @param cardNumber The card number
+     * @return The card's status, or null if the card has no recent failures
+     */
+    public CardStatus getStatus(String cardNumber) {
+        Attempts entry = attempts.get(cardNumber);
+        return entry != null ? statusOf(cardNumber, entry, System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * Get a snapshot of the tracker counters
+     * @return The tracker statistics
+     */
+    public TrackerStats getStats() {
+        long now = System.currentTimeMillis();
+        int locked = 0;
+        for (Attempts entry : attempts.values()) {
+            if (entry.lockedUntil.get() > now) {
+                locked++;
+            }
+        }
+        return new TrackerStats(enabled, attempts.size(), maxCards, locked, failures.sum(), lockouts.sum(),
+            rejected.sum(), evictions.sum(), untracked.sum());
+    }
+
+    /**
+     * Drop cards without a failure in the window and without an active lock
+     */
+    @Scheduled(fixedDelayString = "${banking.pin-lockout.purge-interval-ms:60000}")
+    public void purge() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            attempts.entrySet().removeIf(entry -> entry.getValue().isIdle(now, windowMs));
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    /**
+     * Free an entry for a new card by evicting the unlocked card of a small
+     * sample whose last failure is oldest. Idle cards are left to the
+     * scheduled purge, so a full table costs a bounded amount of work per
+     * new card however many cards are tracked.
+     * @return false if every sampled card is locked
+     */
+    private boolean makeRoom() {
+        long now = System.currentTimeMillis();
+        Map.Entry<String, Attempts> oldest = null;
+        Iterator<Map.Entry<String, Attempts>> iterator = attempts.entrySet().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE && iterator.hasNext(); i++) {
+            Map.Entry<String, Attempts> candidate = iterator.next();
+            if (candidate.getValue().lockedUntil.get() > now) {
+                continue;
+            }
+            if (oldest == null || candidate.getValue().lastFailure.get() < oldest.getValue().lastFailure.get()) {
+                oldest = candidate;
+            }
+        }
+        if (oldest == null) {
+            return false;
+        }
+        if (attempts.remove(oldest.getKey(), oldest.getValue())) {
+            evictions.increment();
+        }
+        return true;
+    }
+
+    private CardStatus statusOf(String cardNumber, Attempts entry, long now) {
+        long lockedUntil = entry.lockedUntil.get();
+        return new CardStatus(cardNumber, entry.recentFailures(now, windowMs),
+            lockedUntil > now ? Instant.ofEpochMilli(lockedUntil) : null, Instant.ofEpochMilli(entry.lastFailure.get()));
+    }
+
+    private static String mask(String cardNumber) {
+        int visible = Math.min(4, cardNumber.length());
+        return "*".repeat(cardNumber.length() - visible) + cardNumber.substring(cardNumber.length() - visible);
+    }
+
+    /**
+     * The recent failures of one card. Every field is updated with atomics only.
+     */
+    private static class Attempts {
+        private final AtomicLongArray failures;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicLong lastFailure = new AtomicLong();
+        private final AtomicLong lockedUntil = new AtomicLong();
+
+        Attempts(int maxAttempts) {
+            failures = new AtomicLongArray(maxAttempts);
+        }
+
+        /**
+         * Count the failures within the window; once a lockout has ended, the
+         * card starts over with a full set of attempts
+         */
+        int recentFailures(long now, long windowMs) {
+            long locked = lockedUntil.get();
+            long since = locked <= now ? Math.max(now - windowMs, locked) : now - windowMs;
+            int count = 0;
+            for (int i = 0; i < failures.length(); i++) {
+                if (failures.get(i) > since) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        boolean isIdle(long now, long windowMs) {
+            return lockedUntil.get() <= now && lastFailure.get() <= now - windowMs;
+        }
+    }
+
+    /**
+     * The failed PINs and lock of a card as shown to admins
+     */
+    public static class CardStatus {
+        private final String cardNumber;
+        private final int recentFailures;
+        private final Instant lockedUntil;
+        private final Instant lastFailure;
+
+        public CardStatus(String cardNumber, int recentFailures, Instant lockedUntil, Instant lastFailure) {
+            this.cardNumber = cardNumber;
+            this.recentFailures = recentFailures;
+            this.lockedUntil = lockedUntil;
+            this.lastFailure = lastFailure;
+        }
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+
+        public int getRecentFailures() {
+            return recentFailures;
+        }
+
+        /**
+         * @return The end of the lockout, or null if the card is not locked
+         */
+        public Instant getLockedUntil() {
+            return lockedUntil;
+        }
+
+        public Instant getLastFailure() {
+            return lastFailure;
+        }
+    }
+
+    /**
+     * Point-in-time view of the tracker
+     */
+    public static class TrackerStats {
+        private final boolean enabled;
+        private final int trackedCards;
+        private final int maxCards;
+        private final int lockedCards;
+        private final long failures;
+        private final long lockouts;
+        private final long rejected;
+        private final long evictions;
+        private final long untracked;
+
+        public TrackerStats(boolean enabled, int trackedCards, int maxCards, int lockedCards, long failures,
+                            long lockouts, long rejected, long evictions, long untracked) {
+            this.enabled = enabled;
+            this.trackedCards = trackedCards;
+            this.maxCards = maxCards;
+            this.lockedCards = lockedCards;
+            this.failures = failures;
+            this.lockouts = lockouts;
+            this.rejected = rejected;
+            this.evictions = evictions;
+            this.untracked = untracked;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getTrackedCards() {
+            return trackedCards;
+        }
+
+        public int getMaxCards() {
+            return maxCards;
+        }
+
+        public int getLockedCards() {
+            return lockedCards;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getLockouts() {
+            return lockouts;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getUntracked() {
+            return untracked;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The gateway's link to System 2, the transaction processor. The processor
+ * runs either in the same process or on one or more processor nodes reached
+ * over the binary RPC link (banking.processor.transport).
+ */
+public interface ProcessorClient {
+    
+    /**
+     * Response message when a request may or may not have been applied, such as
+     * after a timeout; a retry with the same Idempotency-Key settles it
+     */
+    String OUTCOME_UNKNOWN = "Transaction outcome unknown";
+    
+    /**
+     * Process one transaction and wait for its response
+     * @param request The transaction request, already screened by the gateway
+     * @return Transaction response
+     */
+    TransactionResponse process(TransactionRequest request);
+    
+    /**
+     * Process several transactions for the same card in submission order
+     * @param cardNumber The card number shared by all requests
+     * @param requests The transaction requests in submission order
+     * @return Future completed with the responses in the same order
+     */
+    CompletableFuture<List<TransactionResponse>> submit(String cardNumber, List<TransactionRequest> requests);
+}
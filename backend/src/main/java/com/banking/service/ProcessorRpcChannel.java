@@ -0,0 +1,244 @@
+package com.banking.service;
+
+import com.banking.util.ProcessorWireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * One persistent, pipelined connection of the binary processor link.
+ *
+ * Any number of frames may be in flight in both directions. Outgoing frames are
+ * queued and a writer thread encodes everything queued into one buffer before
+ * writing it to the socket, so frames sent while a write is in progress share
+ * the next one. A reader thread decodes incoming frames and hands them to the
+ * handler, which must not keep the payload buffer after it returns.
+ */
+class ProcessorRpcChannel implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessorRpcChannel.class);
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Receives the frames read from the connection
+     */
+    interface FrameHandler {
+        void onFrame(byte kind, long correlationId, ByteBuffer payload);
+    }
+
+    /**
+     * Encodes a frame's payload
+     */
+    interface PayloadWriter {
+        void write(ByteBuffer buffer);
+    }
+
+    private final Socket socket;
+    private final boolean accepted;
+    private final String name;
+    private final FrameHandler handler;
+    private final Runnable onClosed;
+    private final BlockingQueue<OutgoingFrame> outgoing = new LinkedBlockingQueue<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Thread writer;
+    private Thread reader;
+    private OutputStream output;
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+
+    /**
+     * @param socket The connected socket
+     * @param accepted true on the processor side, which expects the client's magic first
+     * @param name Prefix of the connection's thread names
+     * @param handler Receives incoming frames on the reader thread
+     * @param onClosed Called once when the connection closes for any reason
+     */
+    ProcessorRpcChannel(Socket socket, boolean accepted, String name, FrameHandler handler, Runnable onClosed) {
+        this.socket = socket;
+        this.accepted = accepted;
+        this.name = name;
+        this.handler = handler;
+        this.onClosed = onClosed;
+    }
+
+    /**
+     * Start the reader and writer threads
+     * @throws IOException If the connection is already broken
+     */
+    void start() throws IOException {
+        socket.setTcpNoDelay(true);
+        output = socket.getOutputStream();
+        if (!accepted) {
+            writeBuffer.putInt(ProcessorWireFormat.MAGIC);
+            flush();
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), INITIAL_BUFFER_BYTES));
+
+        writer = new Thread(this::writeLoop, name + "-writer");
+        writer.setDaemon(true);
+        reader = new Thread(() -> readLoop(input), name + "-reader");
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * Queue a frame for sending
+     * @param kind The frame kind
+     * @param correlationId The correlation id
+     * @param payload Encodes the payload on the writer thread
+     * @param onFailure Called instead when the payload cannot be encoded
+     * @return false if the connection is closed and the frame was not queued
+     */
+    boolean send(byte kind, long correlationId, PayloadWriter payload, Consumer<RuntimeException> onFailure) {
+        if (closed.get()) {
+            return false;
+        }
+        outgoing.add(new OutgoingFrame(kind, correlationId, payload, onFailure));
+        return true;
+    }
+
+    boolean isOpen() {
+        return !closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing processor connection {}", name, e);
+        }
+        if (writer != null) {
+            writer.interrupt();
+        }
+        onClosed.run();
+    }
+
+    private void writeLoop() {
+        try {
+            while (!closed.get()) {
+                OutgoingFrame frame = outgoing.take();
+                do {
+                    encode(frame);
+                } while ((frame = outgoing.poll()) != null);
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed.get()) {
+                logger.warn("Processor connection {} failed while writing: {}", name, e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void encode(OutgoingFrame frame) throws IOException {
+        while (true) {
+            int start = writeBuffer.position();
+            try {
+                writeBuffer.putInt(0);
+                writeBuffer.put(frame.kind);
+                writeBuffer.putLong(frame.correlationId);
+                frame.payload.write(writeBuffer);
+                int length = writeBuffer.position() - start - Integer.BYTES;
+                if (length > ProcessorWireFormat.MAX_FRAME_BYTES) {
+                    throw new IllegalArgumentException("Frame of " + length + " bytes exceeds the limit");
+                }
+                writeBuffer.putInt(start, length);
+                return;
+            } catch (BufferOverflowException e) {
+                writeBuffer.position(start);
+                if (start > 0) {
+                    // Send the frames already encoded and retry in the emptied buffer
+                    flush();
+                } else if (writeBuffer.capacity() > ProcessorWireFormat.MAX_FRAME_BYTES) {
+                    frame.onFailure.accept(new IllegalArgumentException("Frame exceeds the limit of "
+                        + ProcessorWireFormat.MAX_FRAME_BYTES + " bytes"));
+                    return;
+                } else {
+                    writeBuffer = ByteBuffer.allocate(writeBuffer.capacity() * 2);
+                }
+            } catch (RuntimeException e) {
+                writeBuffer.position(start);
+                frame.onFailure.accept(e);
+                return;
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        if (writeBuffer.position() > 0) {
+            output.write(writeBuffer.array(), 0, writeBuffer.position());
+            output.flush();
+            writeBuffer.clear();
+        }
+    }
+
+    private void readLoop(DataInputStream input) {
+        byte[] frameBytes = new byte[INITIAL_BUFFER_BYTES];
+        try {
+            if (accepted && input.readInt() != ProcessorWireFormat.MAGIC) {
+                throw new IOException("Not a processor client or unsupported protocol version");
+            }
+            while (!closed.get()) {
+                int length = input.readInt();
+                if (length < ProcessorWireFormat.HEADER_BYTES || length > ProcessorWireFormat.MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (frameBytes.length < length) {
+                    frameBytes = new byte[Math.max(length, frameBytes.length * 2)];
+                }
+                input.readFully(frameBytes, 0, length);
+
+                ByteBuffer frame = ByteBuffer.wrap(frameBytes, 0, length);
+                byte kind = frame.get();
+                long correlationId = frame.getLong();
+                handler.onFrame(kind, correlationId, frame.slice());
+            }
+        } catch (EOFException e) {
+            logger.debug("Processor connection {} closed by peer", name);
+        } catch (IOException e) {
+            if (!closed.get()) {
+                logger.warn("Processor connection {} failed while reading: {}", name, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Processor connection {} received a frame it could not handle", name, e);
+        } finally {
+            close();
+        }
+    }
+
+    private static class OutgoingFrame {
+        private final byte kind;
+        private final long correlationId;
+        private final PayloadWriter payload;
+        private final Consumer<RuntimeException> onFailure;
+
+        OutgoingFrame(byte kind, long correlationId, PayloadWriter payload, Consumer<RuntimeException> onFailure) {
+            this.kind = kind;
+            this.correlationId = correlationId;
+            this.payload = payload;
+            this.onFailure = onFailure;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.event.BalanceChangedEvent;
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.util.ProcessorWireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gateway side of the binary processor link.
+ *
+ * Holds a small pool of persistent connections to each processor node. A card
+ * is always sent over the same connection, picked by hashing its number, so
+ * the requests of one card reach its processor in the order they were made
+ * while different cards spread across nodes and connections. Requests are
+ * pipelined: each carries a correlation id and waits on a future that the
+ * matching response completes, whatever order responses come back in.
+ * Connections are opened on first use and reopened on the next request after
+ * they break.
+ *
+ * A request that was sent but got no response, because it timed out or its
+ * connection broke, may still be applied by the processor. It is answered
+ * with ProcessorClient.OUTCOME_UNKNOWN, and the processor answers a retry
+ * carrying the same idempotency key with its first response instead of
+ * running it again.
+ *
+ * Processor nodes commit balances and audit records in their own process. The
+ * CommitListener passes them to the gateway's in-memory views: the balance of
+ * every successful response, also one that arrives after its request timed
+ * out, and the audit records a node commits while one connection to it
+ * subscribes to them.
+ */
+public class ProcessorRpcClient implements ProcessorClient, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessorRpcClient.class);
+
+    /**
+     * Receives what the processor nodes committed
+     */
+    public interface CommitListener {
+        /**
+         * A transaction sent by this client changed a card's balance; changes of one card arrive in order
+         * @param event The committed balance
+         */
+        void onBalanceChanged(BalanceChangedEvent event);
+
+        /**
+         * A processor node committed audit records
+         * @param event The committed records
+         */
+        void onTransactionsRecorded(TransactionsRecordedEvent event);
+    }
+
+    private final List<InetSocketAddress> nodes;
+    private final Connection[] connections;
+    private final ProcessorRpcChannel[] subscriptions;
+    private final long timeoutMs;
+    private final int connectTimeoutMs;
+    private final CommitListener commitListener;
+    private final AtomicLong correlationIds = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param nodes The processor nodes
+     * @param connectionsPerNode The number of connections kept open to each node
+     * @param timeoutMs How long to wait for a response
+     * @param connectTimeoutMs How long to wait for a connection to open
+     */
+    public ProcessorRpcClient(List<InetSocketAddress> nodes, int connectionsPerNode, long timeoutMs, int connectTimeoutMs) {
+        this(nodes, connectionsPerNode, timeoutMs, connectTimeoutMs, null);
+    }
+
+    /**
+     * @param nodes The processor nodes
+     * @param connectionsPerNode The number of connections kept open to each node
+     * @param timeoutMs How long to wait for a response
+     * @param connectTimeoutMs How long to wait for a connection to open
+     * @param commitListener Receives committed balances and audit records, or null to not follow them
+     */
+    public ProcessorRpcClient(List<InetSocketAddress> nodes, int connectionsPerNode, long timeoutMs, int connectTimeoutMs,
+                              CommitListener commitListener) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one processor node is required");
+        }
+        if (connectionsPerNode < 1) {
+            throw new IllegalArgumentException("At least one connection per processor node is required");
+        }
+        this.nodes = List.copyOf(nodes);
+        this.timeoutMs = timeoutMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.commitListener = commitListener;
+        this.connections = new Connection[nodes.size() * connectionsPerNode];
+        this.subscriptions = new ProcessorRpcChannel[nodes.size()];
+        for (int i = 0; i < connections.length; i++) {
+            // Consecutive slots go to different nodes
+            connections[i] = new Connection(i % this.nodes.size(), i);
+        }
+    }
+
+    /**
+     * Parse a list of processor nodes
+     * @param nodes Comma separated host:port pairs
+     * @return The node addresses
+     */
+    public static List<InetSocketAddress> parseNodes(String nodes) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            String trimmed = node.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0 || colon == trimmed.length() - 1) {
+                throw new IllegalArgumentException("Processor node must be host:port, got " + trimmed);
+            }
+            addresses.add(InetSocketAddress.createUnresolved(trimmed.substring(0, colon),
+                Integer.parseInt(trimmed.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
+    @Override
+    public TransactionResponse process(TransactionRequest request) {
+        return ShardRouter.await(submit(request.getCardNumber(), Collections.singletonList(request))).get(0);
+    }
+
+    @Override
+    public CompletableFuture<List<TransactionResponse>> submit(String cardNumber, List<TransactionRequest> requests) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Processor client is closed"));
+        }
+        Connection connection = connections[ShardRouter.shardFor(cardNumber, connections.length)];
+        return connection.send(cardNumber, requests);
+    }
+
+    /**
+     * Get the number of connections currently open
+     * @return The open connection count
+     */
+    public int getOpenConnections() {
+        int open = 0;
+        for (Connection connection : connections) {
+            if (connection.isOpen()) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Get the number of requests waiting for a response
+     * @return The in-flight request count
+     */
+    public int getPendingRequests() {
+        int pending = 0;
+        for (Connection connection : connections) {
+            pending += connection.pending.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Subscribe to a node's audit records on the given channel unless another
+     * open connection to the node already does
+     */
+    private void subscribe(int node, ProcessorRpcChannel channel) {
+        if (commitListener == null) {
+            return;
+        }
+        synchronized (subscriptions) {
+            ProcessorRpcChannel current = subscriptions[node];
+            if (current != null && current.isOpen()) {
+                return;
+            }
+            if (channel.send(ProcessorWireFormat.SUBSCRIBE, 0, buffer -> {}, error -> {})) {
+                subscriptions[node] = channel;
+            }
+        }
+    }
+
+    /**
+     * Move a node's subscription to another open connection after its channel closed
+     */
+    private void resubscribe(int node, ProcessorRpcChannel closedChannel) {
+        if (commitListener == null || closed) {
+            return;
+        }
+        synchronized (subscriptions) {
+            if (subscriptions[node] != closedChannel) {
+                return;
+            }
+            subscriptions[node] = null;
+            for (Connection connection : connections) {
+                ProcessorRpcChannel channel = connection.channel;
+                if (connection.node == node && channel != null && channel != closedChannel && channel.isOpen()) {
+                    subscribe(node, channel);
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * One pooled connection and the requests waiting for a response on it
+     */
+    private class Connection {
+        private final int node;
+        private final InetSocketAddress nodeAddress;
+        private final String address;
+        private final int slot;
+        private final Map<Long, CompletableFuture<List<TransactionResponse>>> pending = new ConcurrentHashMap<>();
+        private volatile ProcessorRpcChannel channel;
+
+        Connection(int node, int slot) {
+            this.node = node;
+            this.nodeAddress = nodes.get(node);
+            this.address = nodeAddress.getHostString() + ":" + nodeAddress.getPort();
+            this.slot = slot;
+        }
+
+        CompletableFuture<List<TransactionResponse>> send(String cardNumber, List<TransactionRequest> requests) {
+            ProcessorRpcChannel current;
+            try {
+                current = open();
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(
+                    new IllegalStateException("Processor node " + address + " is unavailable: " + e.getMessage(), e));
+            }
+
+            long correlationId = correlationIds.incrementAndGet();
+            CompletableFuture<List<TransactionResponse>> future = new CompletableFuture<>();
+            pending.put(correlationId, future);
+            future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((responses, error) -> pending.remove(correlationId));
+
+            boolean queued = current.send(ProcessorWireFormat.REQUEST, correlationId,
+                buffer -> ProcessorWireFormat.writeRequests(buffer, cardNumber, requests),
+                error -> fail(correlationId, error));
+            if (!queued) {
+                fail(correlationId, new IllegalStateException("Connection to processor node " + address + " closed"));
+            }
+            return future.exceptionally(error -> {
+                Throwable cause = unwrap(error);
+                if (cause instanceof TimeoutException || cause instanceof OutcomeUnknownException) {
+                    logger.warn("No response from processor node {} for {} transactions: {}", address, requests.size(),
+                        cause instanceof TimeoutException ? "timed out after " + timeoutMs + " ms" : cause.getMessage());
+                    List<TransactionResponse> unknown = new ArrayList<>(requests.size());
+                    for (int i = 0; i < requests.size(); i++) {
+                        unknown.add(new TransactionResponse(false, OUTCOME_UNKNOWN));
+                    }
+                    return unknown;
+                }
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            });
+        }
+
+        boolean isOpen() {
+            ProcessorRpcChannel current = channel;
+            return current != null && current.isOpen();
+        }
+
+        void close() {
+            ProcessorRpcChannel current = channel;
+            if (current != null) {
+                current.close();
+            }
+        }
+
+        private ProcessorRpcChannel open() throws IOException {
+            ProcessorRpcChannel current = channel;
+            if (current != null && current.isOpen()) {
+                return current;
+            }
+            synchronized (this) {
+                current = channel;
+                if (current != null && current.isOpen()) {
+                    return current;
+                }
+                Socket socket = new Socket();
+                try {
+                    socket.connect(new InetSocketAddress(nodeAddress.getHostString(), nodeAddress.getPort()), connectTimeoutMs);
+                    ProcessorRpcChannel[] holder = new ProcessorRpcChannel[1];
+                    ProcessorRpcChannel opened = new ProcessorRpcChannel(socket, false, "processor-rpc-" + slot,
+                        this::onFrame, () -> onClosed(holder[0]));
+                    holder[0] = opened;
+                    opened.start();
+                    channel = opened;
+                    logger.info("Connected to processor node {} (connection {})", address, slot);
+                    subscribe(node, opened);
+                    return opened;
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+            }
+        }
+
+        private void onFrame(byte kind, long correlationId, ByteBuffer payload) {
+            if (kind == ProcessorWireFormat.RECORDED) {
+                commitListener.onTransactionsRecorded(new TransactionsRecordedEvent(ProcessorWireFormat.readTransactions(payload)));
+                return;
+            }
+            CompletableFuture<List<TransactionResponse>> future = pending.remove(correlationId);
+            if (kind == ProcessorWireFormat.RESPONSE || kind == ProcessorWireFormat.REPLAYED) {
+                List<TransactionResponse> responses = ProcessorWireFormat.readResponses(payload);
+                if (kind == ProcessorWireFormat.RESPONSE) {
+                    // Applied before the caller sees the response, and also when the caller has given up on it
+                    publishBalances(responses);
+                }
+                if (future != null) {
+                    future.complete(responses);
+                }
+            } else if (future == null) {
+                // Timed out already
+                return;
+            } else if (kind == ProcessorWireFormat.ERROR) {
+                future.completeExceptionally(new IllegalStateException(ProcessorWireFormat.readError(payload)));
+            } else {
+                future.completeExceptionally(new IllegalStateException("Unexpected frame kind " + kind));
+            }
+        }
+
+        private void onClosed(ProcessorRpcChannel closedChannel) {
+            // The requests were sent, so the node may have applied them before the connection broke
+            OutcomeUnknownException error = new OutcomeUnknownException("connection to processor node " + address + " closed");
+            for (Long correlationId : pending.keySet()) {
+                fail(correlationId, error);
+            }
+            resubscribe(node, closedChannel);
+        }
+
+        private void publishBalances(List<TransactionResponse> responses) {
+            if (commitListener == null) {
+                return;
+            }
+            for (TransactionResponse response : responses) {
+                if (response.isSuccess() && response.getCardNumber() != null && response.getBalanceAfter() != null) {
+                    commitListener.onBalanceChanged(new BalanceChangedEvent(response.getCardNumber(),
+                        response.getBalanceAfter(), response.getTimestamp()));
+                }
+            }
+        }
+
+        private void fail(long correlationId, RuntimeException error) {
+            CompletableFuture<List<TransactionResponse>> future = pending.remove(correlationId);
+            if (future != null) {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * A request was sent but its response will never arrive
+     */
+    private static class OutcomeUnknownException extends IllegalStateException {
+        OutcomeUnknownException(String message) {
+            super(message);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
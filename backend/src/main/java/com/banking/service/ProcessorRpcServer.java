@@ -0,0 +1,281 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.model.Transaction;
+import com.banking.util.ProcessorWireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Processor side of the binary processor link, enabled with
+ * banking.processor.rpc.enabled.
+ *
+ * Every gateway connection gets its own reader and writer thread. Request
+ * frames are decoded on the reader thread and queued on the card lanes like
+ * in-process requests, so the reader goes straight on to the next frame and a
+ * connection can have many requests in flight. Each response is sent with the
+ * correlation id of its request as soon as the lane finishes it.
+ *
+ * A request carrying an idempotency key is run once: the responses of the last
+ * banking.processor.rpc.idempotency-cache-size keyed requests are kept, and a
+ * retry of one, typically after the gateway gave up waiting, gets the first
+ * response or waits for the first execution to finish. Audit records committed
+ * here are sent to every connection that subscribed to them.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.processor.rpc.enabled", havingValue = "true")
+public class ProcessorRpcServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessorRpcServer.class);
+
+    private static final int RECORDED_FRAME_SIZE = 1000;
+
+    @Autowired
+    private InProcessProcessorClient inProcessProcessorClient;
+
+    @Value("${banking.processor.rpc.port:9090}")
+    private int port;
+
+    @Value("${banking.processor.rpc.bind-address:0.0.0.0}")
+    private String bindAddress;
+
+    @Value("${banking.processor.rpc.idempotency-cache-size:10000}")
+    private int idempotencyCacheSize;
+
+    private final Set<ProcessorRpcChannel> channels = ConcurrentHashMap.newKeySet();
+    private final Set<ProcessorRpcChannel> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder replayed = new LongAdder();
+    private Map<String, KeyedExecution> executions;
+    private final AtomicInteger connectionNumber = new AtomicInteger();
+
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        executions = new LinkedHashMap<String, KeyedExecution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeyedExecution> eldest) {
+                return size() > idempotencyCacheSize;
+            }
+        };
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        running = true;
+
+        Thread acceptor = new Thread(this::acceptLoop, "processor-rpc-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Processor RPC server listening on port {}", serverSocket.getLocalPort());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (ProcessorRpcChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Get the port the server listens on, which is chosen by the system when configured as 0
+     * @return The local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Get the number of gateway connections currently open
+     * @return The connection count
+     */
+    public int getConnectionCount() {
+        return channels.size();
+    }
+
+    /**
+     * Get the number of keyed requests answered with the response of an earlier execution
+     * @return The replayed request count
+     */
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * Send committed audit records to the subscribed gateways
+     * @param event The committed records
+     */
+    @EventListener
+    public void onTransactionsRecorded(TransactionsRecordedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        List<Transaction> transactions = event.getTransactions();
+        for (int from = 0; from < transactions.size(); from += RECORDED_FRAME_SIZE) {
+            List<Transaction> chunk = transactions.subList(from, Math.min(transactions.size(), from + RECORDED_FRAME_SIZE));
+            for (ProcessorRpcChannel channel : subscribers) {
+                channel.send(ProcessorWireFormat.RECORDED, 0,
+                    buffer -> ProcessorWireFormat.writeTransactions(buffer, chunk),
+                    error -> logger.error("Could not encode audit records for a gateway: {}", error.getMessage()));
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Processor RPC server stopped accepting connections", e);
+                }
+                return;
+            }
+
+            ProcessorRpcChannel[] holder = new ProcessorRpcChannel[1];
+            ProcessorRpcChannel channel = new ProcessorRpcChannel(socket, true,
+                "processor-rpc-server-" + connectionNumber.getAndIncrement(),
+                (kind, correlationId, payload) -> onFrame(holder[0], kind, correlationId, payload),
+                () -> {
+                    channels.remove(holder[0]);
+                    subscribers.remove(holder[0]);
+                    logger.debug("Gateway connection from {} closed", socket.getRemoteSocketAddress());
+                });
+            holder[0] = channel;
+            channels.add(channel);
+            try {
+                channel.start();
+                logger.debug("Gateway connection from {} opened", socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                logger.warn("Could not set up gateway connection from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                channel.close();
+            }
+        }
+    }
+
+    private void onFrame(ProcessorRpcChannel channel, byte kind, long correlationId, ByteBuffer payload) {
+        if (kind == ProcessorWireFormat.SUBSCRIBE) {
+            subscribers.add(channel);
+            return;
+        }
+        if (kind != ProcessorWireFormat.REQUEST) {
+            sendError(channel, correlationId, "Unexpected frame kind " + kind);
+            return;
+        }
+
+        List<TransactionRequest> requests;
+        try {
+            requests = ProcessorWireFormat.readRequests(payload);
+        } catch (RuntimeException e) {
+            sendError(channel, correlationId, "Malformed request: " + e);
+            return;
+        }
+        if (requests.isEmpty()) {
+            sendError(channel, correlationId, "Request frame carries no transactions");
+            return;
+        }
+
+        String cardNumber = requests.get(0).getCardNumber();
+        String key = requests.size() == 1 ? requests.get(0).getIdempotencyKey() : null;
+        byte responseKind = ProcessorWireFormat.RESPONSE;
+        CompletableFuture<List<TransactionResponse>> result;
+        if (key == null) {
+            result = inProcessProcessorClient.submit(cardNumber, requests);
+        } else {
+            KeyedExecution execution = new KeyedExecution(IdempotencyService.fingerprint(requests.get(0)));
+            KeyedExecution previous;
+            synchronized (executions) {
+                previous = executions.putIfAbsent(key, execution);
+            }
+            if (previous == null) {
+                result = execute(key, execution, cardNumber, requests);
+            } else {
+                // Marked as a replay so the gateway does not take its balances for current ones
+                responseKind = ProcessorWireFormat.REPLAYED;
+                replayed.increment();
+                result = previous.fingerprint.equals(execution.fingerprint) ? previous.result
+                    : CompletableFuture.completedFuture(List.of(new TransactionResponse(false, IdempotencyService.KEY_REUSED_MESSAGE)));
+            }
+        }
+
+        byte kindToSend = responseKind;
+        result.whenComplete((responses, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.error("Processing failed for a request from the gateway", cause);
+                sendError(channel, correlationId, "Processing failed: " + cause.getMessage());
+                return;
+            }
+            channel.send(kindToSend, correlationId,
+                buffer -> ProcessorWireFormat.writeResponses(buffer, responses),
+                encodeError -> sendError(channel, correlationId, "Could not encode response: " + encodeError.getMessage()));
+        });
+    }
+
+    private CompletableFuture<List<TransactionResponse>> execute(String key, KeyedExecution execution, String cardNumber,
+                                                                 List<TransactionRequest> requests) {
+        inProcessProcessorClient.submit(cardNumber, requests).whenComplete((responses, error) -> {
+            if (error != null) {
+                // Nothing was applied, a retry may run it
+                synchronized (executions) {
+                    executions.remove(key, execution);
+                }
+                execution.result.completeExceptionally(error);
+            } else {
+                if (!IdempotencyService.isReplayable(responses.get(0))) {
+                    // A wrong PIN decline applied nothing; a retry with the correct PIN must run
+                    synchronized (executions) {
+                        executions.remove(key, execution);
+                    }
+                }
+                execution.result.complete(responses);
+            }
+        });
+        return execution.result;
+    }
+
+    private void sendError(ProcessorRpcChannel channel, long correlationId, String message) {
+        channel.send(ProcessorWireFormat.ERROR, correlationId,
+            buffer -> ProcessorWireFormat.writeError(buffer, message),
+            error -> logger.error("Could not encode error response: {}", error.getMessage()));
+    }
+
+    /**
+     * The first execution of a keyed request
+     */
+    private static class KeyedExecution {
+        private final String fingerprint;
+        private final CompletableFuture<List<TransactionResponse>> result = new CompletableFuture<>();
+
+        KeyedExecution(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionFilter;
+import com.banking.dto.TransactionPage;
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.model.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recent transaction history per card, served from memory.
+ *
+ * Each card that was asked for keeps a ring buffer of its latest transactions.
+ * The buffer is seeded with one page from the database on first access and then
+ * fed by the audit writer as records are committed. The first page is served
+ * from the buffer; older pages fall back to the keyset-paginated database
+ * query. The number of buffered transactions is bounded, and the
+ * least-recently-used cards are evicted once the budget is spent.
+ */
+@Component
+public class RecentTransactionHistory {
+    
+    @Autowired
+    private ShardedLedger shardedLedger;
+    
+    @Value("${banking.history.per-card:20}")
+    private int perCard;
+    
+    @Value("${banking.history.max-entries:200000}")
+    private int maxEntries;
+    
+    private int maxCards;
+    
+    private Map<String, CardHistory> histories;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        maxCards = Math.max(1, maxEntries / perCard);
+        histories = new LinkedHashMap<String, CardHistory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CardHistory> eldest) {
+                if (size() > maxCards) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Get the default page size, matching the number of transactions kept per card
+     * @return The number of transactions kept per card
+     */
+    public int getPerCard() {
+        return perCard;
+    }
+    
+    /**
+     * Find one page of a card's transactions, newest first
+     * @param cardNumber The card number
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param limit The maximum number of transactions to return
+     * @return The page and the cursor of the next one
+     */
+    public TransactionPage findPage(String cardNumber, String cursor, int limit) {
+        if ((cursor != null && !cursor.isEmpty()) || limit > perCard) {
+            fallbacks.increment();
+            return shardedLedger.findPage(filterFor(cardNumber), cursor, limit);
+        }
+        int pageSize = Math.max(1, limit);
+        
+        CardHistory history;
+        synchronized (this) {
+            history = histories.get(cardNumber);
+            if (history == null) {
+                history = new CardHistory(perCard);
+                histories.put(cardNumber, history);
+            }
+            if (history.loaded) {
+                hits.increment();
+                return history.page(pageSize);
+            }
+        }
+        
+        // Seed outside the lock; records committed meanwhile are collected and merged
+        misses.increment();
+        TransactionPage latest = shardedLedger.findPage(filterFor(cardNumber), null, perCard);
+        synchronized (this) {
+            if (!history.loaded) {
+                history.seed(latest.getItems(), latest.getNextCursor() != null);
+            }
+            return history.page(pageSize);
+        }
+    }
+    
+    /**
+     * Append committed transactions to the histories of cards held in memory
+     * @param event The committed transactions
+     */
+    @EventListener
+    public synchronized void onTransactionsRecorded(TransactionsRecordedEvent event) {
+        for (Transaction transaction : event.getTransactions()) {
+            CardHistory history = histories.get(transaction.getCardNumber());
+            if (history != null) {
+                history.add(transaction);
+            }
+        }
+    }
+    
+    /**
+     * Drop every buffered history
+     */
+    public synchronized void invalidateAll() {
+        histories.clear();
+    }
+    
+    /**
+     * Get a snapshot of the history statistics
+     * @return The history statistics
+     */
+    public HistoryStats getStats() {
+        int cards;
+        synchronized (this) {
+            cards = histories.size();
+        }
+        return new HistoryStats(cards, maxCards, perCard, hits.sum(), misses.sum(), fallbacks.sum(), evictions.sum());
+    }
+    
+    private static TransactionFilter filterFor(String cardNumber) {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setCardNumber(cardNumber);
+        return filter;
+    }
+    
+    /**
+     * Ring buffer of a card's latest transactions, guarded by the enclosing instance
+     */
+    private static class CardHistory {
+        private final Transaction[] ring;
+        private int next;
+        private int size;
+        // Older transactions exist in the database beyond the buffered ones
+        private boolean truncated;
+        private boolean loaded;
+        
+        CardHistory(int capacity) {
+            this.ring = new Transaction[capacity];
+        }
+        
+        void add(Transaction transaction) {
+            if (size == ring.length) {
+                truncated = true;
+            } else {
+                size++;
+            }
+            ring[next] = transaction;
+            next = (next + 1) % ring.length;
+        }
+        
+        /**
+         * Merge the newest page from the database with records appended while it loaded
+         */
+        void seed(List<Transaction> newestFirst, boolean hasOlder) {
+            List<Transaction> appended = newestFirst(size);
+            next = 0;
+            size = 0;
+            truncated = hasOlder;
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                add(newestFirst.get(i));
+            }
+            long newestSeeded = newestFirst.isEmpty() ? Long.MIN_VALUE : newestFirst.get(0).getId();
+            for (int i = appended.size() - 1; i >= 0; i--) {
+                if (appended.get(i).getId() > newestSeeded) {
+                    add(appended.get(i));
+                }
+            }
+            loaded = true;
+        }
+        
+        TransactionPage page(int limit) {
+            List<Transaction> items = newestFirst(Math.min(limit, size));
+            boolean hasMore = size > limit || truncated;
+            String nextCursor = hasMore && !items.isEmpty()
+                ? TransactionQueryService.cursorAfter(items.get(items.size() - 1))
+                : null;
+            return new TransactionPage(items, nextCursor);
+        }
+        
+        private List<Transaction> newestFirst(int count) {
+            List<Transaction> items = new ArrayList<>(count);
+            for (int i = 1; i <= count; i++) {
+                items.add(ring[Math.floorMod(next - i, ring.length)]);
+            }
+            return items;
+        }
+    }
+    
+    /**
+     * Point-in-time view of the history buffers
+     */
+    public static class HistoryStats {
+        private final int cards;
+        private final int maxCards;
+        private final int perCard;
+        private final long hits;
+        private final long misses;
+        private final long fallbacks;
+        private final long evictions;
+        
+        public HistoryStats(int cards, int maxCards, int perCard, long hits, long misses, long fallbacks, long evictions) {
+            this.cards = cards;
+            this.maxCards = maxCards;
+            this.perCard = perCard;
+            this.hits = hits;
+            this.misses = misses;
+            this.fallbacks = fallbacks;
+            this.evictions = evictions;
+        }
+        
+        public int getCards() {
+            return cards;
+        }
+        
+        public int getMaxCards() {
+            return maxCards;
+        }
+        
+        public int getPerCard() {
+            return perCard;
+        }
+        
+        public long getHits() {
+            return hits;
+        }
+        
+        public long getMisses() {
+            return misses;
+        }
+        
+        public long getFallbacks() {
+            return fallbacks;
+        }
+        
+        public long getEvictions() {
+            return evictions;
+        }
+    }
+}
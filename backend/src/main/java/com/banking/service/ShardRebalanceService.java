@@ -0,0 +1,173 @@
+package com.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline rebalance after the shard count changed.
+ *
+ * Every shard in use, plus the shards being drained when the count shrinks
+ * (banking.sharding.previous-shards), is scanned for cards whose shard under
+ * the current count is a different one. Each such card is moved together with
+ * its transactions, keeping their ids: the rows are first replaced on the
+ * target shard in one transaction and then deleted from the source shard in
+ * another. A rebalance that stopped halfway can therefore simply be run again.
+ * Nothing else may write to the shards while it runs.
+ */
+@Service
+public class ShardRebalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceService.class);
+
+    private static final String CARD_COLUMNS = "id, card_number, pin_hash, balance, created_at, updated_at";
+    private static final String TRANSACTION_COLUMNS = "id, card_number, type, amount, timestamp, status, message, balance_after";
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${banking.sharding.previous-shards:0}")
+    private int previousShardCount;
+
+    @Value("${banking.sharding.rebalance-batch-size:200}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Move every card that is on the wrong shard for the current shard count
+     * @return The number of cards and transactions moved
+     */
+    public RebalanceReport rebalance() {
+        int shardCount = shardRouter.getShardCount();
+        int scannedShards = Math.max(shardCount, previousShardCount);
+        RebalanceReport report = new RebalanceReport();
+        long start = System.currentTimeMillis();
+
+        for (int source = 0; source < scannedShards; source++) {
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                long afterId = lastId;
+                List<Map<String, Object>> cards = shardRouter.onShard(source, () -> jdbcTemplate.queryForList(
+                    "SELECT " + CARD_COLUMNS + " FROM cards WHERE id > ? ORDER BY id LIMIT ?", afterId, batchSize));
+                if (cards.isEmpty()) {
+                    break;
+                }
+                lastId = ((Number) cards.get(cards.size() - 1).get("id")).longValue();
+                report.scanned += cards.size();
+
+                Map<Integer, List<Map<String, Object>>> cardsByTarget = new TreeMap<>();
+                for (Map<String, Object> card : cards) {
+                    int target = ShardRouter.shardFor((String) card.get("card_number"), shardCount);
+                    if (target != source) {
+                        cardsByTarget.computeIfAbsent(target, shard -> new ArrayList<>()).add(card);
+                    }
+                }
+                for (Map.Entry<Integer, List<Map<String, Object>>> entry : cardsByTarget.entrySet()) {
+                    move(source, entry.getKey(), entry.getValue(), report);
+                }
+            }
+            logger.info("Rebalanced shard {}: {} cards scanned, {} cards moved so far", source, report.scanned, report.cardsMoved);
+        }
+
+        report.elapsedMs = System.currentTimeMillis() - start;
+        logger.info("Shard rebalance finished: {} cards and {} transactions moved across {} shards in {} ms",
+            report.cardsMoved, report.transactionsMoved, shardCount, report.elapsedMs);
+        return report;
+    }
+
+    private void move(int source, int target, List<Map<String, Object>> cards, RebalanceReport report) {
+        List<Object> cardNumbers = new ArrayList<>(cards.size());
+        for (Map<String, Object> card : cards) {
+            cardNumbers.add(card.get("card_number"));
+        }
+        String inCards = "card_number IN (" + String.join(", ", Collections.nCopies(cardNumbers.size(), "?")) + ")";
+        Object[] cardNumberArgs = cardNumbers.toArray();
+
+        List<Map<String, Object>> transactions = shardRouter.onShard(source, () -> jdbcTemplate.queryForList(
+            "SELECT " + TRANSACTION_COLUMNS + " FROM transactions WHERE " + inCards, cardNumberArgs));
+
+        // Replace whatever an interrupted earlier run left on the target
+        shardRouter.onShard(target, () -> transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM transactions WHERE " + inCards, cardNumberArgs);
+            jdbcTemplate.update("DELETE FROM cards WHERE " + inCards, cardNumberArgs);
+            insertRows("cards", CARD_COLUMNS, cards);
+            insertRows("transactions", TRANSACTION_COLUMNS, transactions);
+            return null;
+        }));
+        shardRouter.onShard(source, () -> transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM transactions WHERE " + inCards, cardNumberArgs);
+            jdbcTemplate.update("DELETE FROM cards WHERE " + inCards, cardNumberArgs);
+            return null;
+        }));
+
+        report.cardsMoved += cards.size();
+        report.transactionsMoved += transactions.size();
+    }
+
+    private void insertRows(String table, String columns, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String[] names = columns.split(", ");
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object[] values = new Object[names.length];
+            for (int i = 0; i < names.length; i++) {
+                values[i] = row.get(names[i]);
+            }
+            batch.add(values);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO " + table + " (" + columns + ") VALUES ("
+            + String.join(", ", Collections.nCopies(names.length, "?")) + ")", batch);
+    }
+
+    /**
+     * Outcome of a rebalance
+     */
+    public static class RebalanceReport {
+        private long scanned;
+        private long cardsMoved;
+        private long transactionsMoved;
+        private long elapsedMs;
+
+        public long getScanned() {
+            return scanned;
+        }
+
+        public long getCardsMoved() {
+            return cardsMoved;
+        }
+
+        public long getTransactionsMoved() {
+            return transactionsMoved;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Places every card, and the transactions of that card, on one of a fixed
+ * number of database shards by hashing the card number.
+ *
+ * The shard a piece of work runs against is held in a thread-local context
+ * that the routing DataSource reads when a connection is acquired. JPA
+ * acquires its connection when a transaction begins, so the context has to be
+ * set before entering a transactional method, never inside it. Work that
+ * spans shards, such as the admin queries, runs once per shard and merges the
+ * results. With a single shard every call runs inline against the one database.
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    @Value("${banking.sharding.shards:1}")
+    private int shardCount;
+
+    private ExecutorService fanOutPool;
+
+    private volatile boolean parallel;
+
+    @PostConstruct
+    public void start() {
+        if (shardCount < 1) {
+            throw new IllegalStateException("banking.sharding.shards must be at least 1");
+        }
+        if (shardCount == 1) {
+            return;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        fanOutPool = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "shard-query-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Routing cards and transactions across {} shards", shardCount);
+    }
+
+    /**
+     * Start running fan-out work on the pool. Until the context is refreshed it
+     * runs on the calling thread: a pool thread calling into a bean while the
+     * caller is still creating singletons would wait on the bean factory forever.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void enableParallelFanOut() {
+        parallel = fanOutPool != null;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (fanOutPool != null) {
+            fanOutPool.shutdown();
+            fanOutPool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Get the number of shards cards are spread across
+     * @return The shard count
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Get the shard that owns a card
+     * @param cardNumber The card number
+     * @return The shard index
+     */
+    public int shardFor(String cardNumber) {
+        return shardFor(cardNumber, shardCount);
+    }
+
+    /**
+     * Get the shard that owns a card for a given shard count. The hash must
+     * never change, otherwise existing cards are looked up on the wrong shard.
+     * @param cardNumber The card number
+     * @param shardCount The number of shards
+     * @return The shard index
+     */
+    public static int shardFor(String cardNumber, int shardCount) {
+        // Finalize the string hash so neighbouring card numbers spread evenly
+        int hash = cardNumber.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    }
+
+    /**
+     * Get the shard the current thread is routed to
+     * @return The shard index, or null when no shard was selected
+     */
+    public static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    /**
+     * Run a task against the shard that owns a card
+     * @param cardNumber The card number
+     * @param task The task, which may open its own database transaction
+     * @return The result of the task
+     */
+    public <T> T onCard(String cardNumber, Supplier<T> task) {
+        return onShard(shardFor(cardNumber), task);
+    }
+
+    /**
+     * Run a task against one shard
+     * @param shard The shard index
+     * @param task The task, which may open its own database transaction
+     * @return The result of the task
+     */
+    public <T> T onShard(int shard, Supplier<T> task) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Run a task against one shard on the fan-out pool once the application is
+     * started, so the caller can go on while it runs
+     * @param shard The shard index
+     * @param task The task, which may open its own database transaction
+     * @return Future completed with the result of the task
+     */
+    public <T> CompletableFuture<T> onShardAsync(int shard, Supplier<T> task) {
+        if (!parallel) {
+            try {
+                return CompletableFuture.completedFuture(onShard(shard, task));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> onShard(shard, task), fanOutPool);
+    }
+
+    /**
+     * Run a task against every shard, in parallel once the application is started
+     * @param task Creates the task for a shard index
+     * @return The results in shard order
+     */
+    public <T> List<T> onAllShards(IntFunction<T> task) {
+        if (shardCount == 1) {
+            return Collections.singletonList(onShard(0, () -> task.apply(0)));
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            futures.add(onShardAsync(shard, () -> task.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (CompletableFuture<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * Wait for a shard task, rethrowing its exception unwrapped
+     * @param future The future of the task
+     * @return The result of the task
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.banking.service;
+
+import com.banking.dto.CardPage;
+import com.banking.dto.TransactionFilter;
+import com.banking.dto.TransactionPage;
+import com.banking.model.Card;
+import com.banking.model.Transaction;
+import com.banking.repository.CardRepository;
+import com.banking.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Shard-aware view over the card and transaction repositories.
+ *
+ * Lookups for a single card go to the shard that owns it. Queries over all
+ * cards or transactions run on every shard in parallel and are merged, so
+ * callers see the same results as with a single database: pages and exports
+ * stay ordered newest first across shards and a keyset cursor from a merged
+ * page continues on every shard. Ids are unique across shards (see
+ * V6__SeparateShardIdRanges), so (timestamp, id) still orders every row.
+ */
+@Service
+public class ShardedLedger {
+
+    public static final int MAX_CARD_PAGE_SIZE = 1000;
+
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    private static final int CARD_NUMBER_PAGE_SIZE = 1000;
+
+    private static final Comparator<Transaction> NEWEST_FIRST = Comparator
+        .comparing(Transaction::getTimestamp)
+        .thenComparing(Transaction::getId)
+        .reversed();
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionQueryService transactionQueryService;
+
+    /**
+     * Find a card on the shard that owns it
+     * @param cardNumber The card number
+     * @return Optional containing the card if found
+     */
+    public Optional<Card> findCard(String cardNumber) {
+        return shardRouter.onCard(cardNumber, () -> cardRepository.findByCardNumber(cardNumber));
+    }
+
+    /**
+     * Find one keyset page of cards across every shard
+     * @param cursor The id of the last card of the previous page, or null for the first page
+     * @param limit The maximum number of cards to return
+     * @return The cards ordered by id and the cursor of the next page
+     */
+    public CardPage findCardPage(Long cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_CARD_PAGE_SIZE));
+        long afterId = cursor != null ? cursor : Long.MIN_VALUE;
+
+        // Ids are unique across shards; one row past the page on each shard tells whether more follow
+        List<Card> cards = new ArrayList<>();
+        shardRouter.onAllShards(shard -> cardRepository.findCardsAfter(afterId, PageRequest.of(0, pageSize + 1)))
+            .forEach(cards::addAll);
+        cards.sort(Comparator.comparing(Card::getId));
+        if (cards.size() <= pageSize) {
+            return new CardPage(cards, null);
+        }
+        List<Card> page = new ArrayList<>(cards.subList(0, pageSize));
+        return new CardPage(page, page.get(pageSize - 1).getId());
+    }
+
+    /**
+     * Get the balance of every card of every shard
+     * @return Card numbers with their balances
+     */
+    public List<CardRepository.CardBalance> findAllBalances() {
+        List<CardRepository.CardBalance> balances = new ArrayList<>();
+        shardRouter.onAllShards(shard -> cardRepository.findAllBalances()).forEach(balances::addAll);
+        return balances;
+    }
+
+    /**
+     * Pass every card number of every shard to a consumer, one keyset page at a time
+     * @param consumer Receives each card number, shard by shard
+     * @return The number of card numbers passed
+     */
+    public long forEachCardNumber(Consumer<String> consumer) {
+        long count = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                long afterId = lastId;
+                List<CardRepository.CardNumberKey> page = shardRouter.onShard(shard, () ->
+                    cardRepository.findCardNumbersAfter(afterId, PageRequest.of(0, CARD_NUMBER_PAGE_SIZE)));
+                for (CardRepository.CardNumberKey card : page) {
+                    consumer.accept(card.getCardNumber());
+                }
+                count += page.size();
+                if (page.size() < CARD_NUMBER_PAGE_SIZE) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Count the cards of every shard
+     * @return The total number of cards
+     */
+    public long countCards() {
+        return shardRouter.onAllShards(shard -> cardRepository.count()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Count and sum transactions grouped by status, type and message on every shard
+     * @return The aggregates of each shard; the same group appears once per shard holding it
+     */
+    public List<TransactionRepository.TransactionAggregate> aggregateTransactions() {
+        List<TransactionRepository.TransactionAggregate> aggregates = new ArrayList<>();
+        shardRouter.onAllShards(shard -> transactionRepository.aggregateByStatusTypeAndMessage())
+            .forEach(aggregates::addAll);
+        return aggregates;
+    }
+
+    /**
+     * Find one page of transactions, newest first, across the shards the filter can match
+     * @param filter The filters to apply
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param limit The maximum number of transactions to return
+     * @return The page and the cursor of the next one
+     */
+    public TransactionPage findPage(TransactionFilter filter, String cursor, int limit) {
+        if (filter.getCardNumber() != null || shardRouter.getShardCount() == 1) {
+            return shardRouter.onShard(singleShard(filter), () -> transactionQueryService.findPage(filter, cursor, limit));
+        }
+        int pageSize = Math.max(1, Math.min(limit, TransactionQueryService.MAX_PAGE_SIZE));
+
+        // Each shard returns its newest rows past the cursor; the page is the newest of all of them
+        List<Transaction> merged = new ArrayList<>();
+        boolean more = false;
+        for (TransactionPage page : shardRouter.onAllShards(shard -> transactionQueryService.findPage(filter, cursor, pageSize))) {
+            merged.addAll(page.getItems());
+            more |= page.getNextCursor() != null;
+        }
+        merged.sort(NEWEST_FIRST);
+        if (merged.size() > pageSize) {
+            merged = new ArrayList<>(merged.subList(0, pageSize));
+            more = true;
+        }
+        return new TransactionPage(merged, more ? TransactionQueryService.cursorAfter(merged.get(merged.size() - 1)) : null);
+    }
+
+    /**
+     * Stream every matching transaction, newest first, to a consumer
+     * @param filter The filters to apply
+     * @param consumer Receives each transaction; it must not keep a reference to it
+     */
+    public void streamTransactions(TransactionFilter filter, Consumer<Transaction> consumer) {
+        if (filter.getCardNumber() != null || shardRouter.getShardCount() == 1) {
+            shardRouter.onShard(singleShard(filter), () -> {
+                transactionQueryService.streamTransactions(filter, consumer);
+                return null;
+            });
+            return;
+        }
+
+        // Merge keyset pages of every shard, holding at most two pages per shard in memory
+        PriorityQueue<ShardPages> heads = new PriorityQueue<>(Comparator.comparing(ShardPages::peek, NEWEST_FIRST));
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            ShardPages pages = new ShardPages(shard, filter);
+            if (pages.advance()) {
+                heads.add(pages);
+            }
+        }
+        while (!heads.isEmpty()) {
+            ShardPages pages = heads.poll();
+            consumer.accept(pages.next());
+            if (pages.advance()) {
+                heads.add(pages);
+            }
+        }
+    }
+
+    private int singleShard(TransactionFilter filter) {
+        return filter.getCardNumber() != null ? shardRouter.shardFor(filter.getCardNumber()) : 0;
+    }
+
+    /**
+     * The export position on one shard, fetching the following page ahead of time
+     */
+    private class ShardPages {
+        private final int shard;
+        private final TransactionFilter filter;
+        private List<Transaction> items = List.of();
+        private int position;
+        private CompletableFuture<TransactionPage> following;
+
+        ShardPages(int shard, TransactionFilter filter) {
+            this.shard = shard;
+            this.filter = filter;
+            this.following = fetch(null);
+        }
+
+        /**
+         * Make sure a transaction is available, loading the next page if needed
+         * @return false once the shard has no more transactions
+         */
+        boolean advance() {
+            if (position < items.size()) {
+                return true;
+            }
+            if (following == null) {
+                return false;
+            }
+            TransactionPage page = ShardRouter.await(following);
+            items = page.getItems();
+            position = 0;
+            following = page.getNextCursor() != null ? fetch(page.getNextCursor()) : null;
+            return !items.isEmpty();
+        }
+
+        Transaction peek() {
+            return items.get(position);
+        }
+
+        Transaction next() {
+            return items.get(position++);
+        }
+
+        private CompletableFuture<TransactionPage> fetch(String cursor) {
+            // Loads on the fan-out pool while the caller consumes the current page
+            return shardRouter.onShardAsync(shard, () -> transactionQueryService.findPage(filter, cursor, EXPORT_PAGE_SIZE));
+        }
+    }
+}
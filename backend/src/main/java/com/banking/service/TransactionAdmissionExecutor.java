@@ -0,0 +1,128 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded admission for transaction processing.
+ *
+ * Transactions run on a dedicated pool with a fixed-size queue instead of on
+ * the servlet container threads. When the pool and its queue are full the
+ * request is rejected right away with 429 and a Retry-After header, so a slow
+ * database cannot exhaust the container threads serving every other endpoint.
+ */
+@Component
+public class TransactionAdmissionExecutor {
+
+    /**
+     * Response to a request turned away because the queue is full; nothing was applied
+     */
+    public static final String BUSY_MESSAGE = "System busy, please retry later";
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionAdmissionExecutor.class);
+
+    @Value("${banking.async.enabled:true}")
+    private boolean enabled;
+
+    @Value("${banking.async.threads:0}")
+    private int configuredThreads;
+
+    @Value("${banking.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${banking.async.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Asynchronous transaction processing disabled");
+            return;
+        }
+
+        int threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "transaction-worker-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Started transaction pool with {} threads and a queue of {}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Run a transaction on the processing pool, or reject it when the pool is saturated
+     * @param task The transaction to run
+     * @return Future completed with 200 and the transaction response, or with 429 when rejected
+     */
+    public CompletableFuture<ResponseEntity<TransactionResponse>> submit(Supplier<TransactionResponse> task) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok(task.get()));
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(task, executor).thenApply(ResponseEntity::ok);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new TransactionResponse(false, BUSY_MESSAGE)));
+        }
+    }
+
+    /**
+     * Get the number of transactions waiting for a worker
+     * @return The queue size, 0 if asynchronous processing is disabled
+     */
+    public int getQueueSize() {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+    /**
+     * Get the number of workers currently processing a transaction
+     * @return The active worker count
+     */
+    public int getActiveCount() {
+        return executor != null ? executor.getActiveCount() : 0;
+    }
+
+    /**
+     * Get the number of transactions rejected because the pool was saturated
+     * @return The rejected transaction count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,384 @@
+package com.banking.service;
+
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.model.Transaction;
+import com.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind writer for Transaction audit records.
+ *
+ * Records are queued and a single flusher thread persists them in batches, one
+ * database transaction per batch (group commit). A batch is flushed once it
+ * reaches the configured size or once its oldest record has waited for the
+ * flush interval, whichever comes first.
+ *
+ * Records are written in their own transactions, not in the caller's. The
+ * processor therefore hands them over only after its balance update has
+ * committed, so a rollback leaves no record. The reverse is not atomic: a
+ * record that fails to be written after the commit is logged and counted as
+ * failed, but the balance change stands. A FLUSH caller waits at most
+ * banking.audit.flush-wait-ms for its batch. The processor leaves that wait
+ * to the caller of its card lane (see DurableAck), so the lane can add its
+ * next commit to the same batch.
+ */
+@Component
+public class TransactionAuditWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionAuditWriter.class);
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    /**
+     * How long a caller waits for its record
+     */
+    public enum Durability {
+        /** Return only once the batch holding the record has been committed, or fail after the flush wait */
+        FLUSH,
+        /** Return as soon as the record is queued */
+        ASYNC
+    }
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${banking.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${banking.audit.flush-interval-ms:2}")
+    private long flushIntervalMs;
+
+    @Value("${banking.audit.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${banking.audit.success-durability:FLUSH}")
+    private Durability successDurability;
+
+    @Value("${banking.audit.decline-durability:ASYNC}")
+    private Durability declineDurability;
+
+    @Value("${banking.audit.flush-wait-ms:1000}")
+    private long flushWaitMs;
+
+    private BlockingQueue<PendingRecord> queue;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong recordsFailed = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "transaction-audit-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_WAIT_SECONDS));
+    }
+
+    /**
+     * Record a transaction using the durability configured for its outcome
+     * @param transaction The transaction to record
+     */
+    public void record(Transaction transaction) {
+        CompletableFuture<Void> flushed = enqueue(transaction);
+        if (durabilityOf(transaction) == Durability.FLUSH) {
+            awaitFlush(flushed);
+        }
+    }
+
+    /**
+     * Record several transactions, waiting once for all that need to be flushed
+     * @param transactions The transactions to record
+     */
+    public void recordAll(List<Transaction> transactions) {
+        awaitFlush(enqueueAll(transactions));
+    }
+
+    /**
+     * Queue several transactions without waiting for them
+     * @param transactions The transactions to record
+     * @return Future completed once every record needing FLUSH durability is committed,
+     *         failing once the flush wait has passed
+     */
+    public CompletableFuture<Void> enqueueAll(List<Transaction> transactions) {
+        List<CompletableFuture<Void>> pendingFlushes = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            CompletableFuture<Void> flushed = enqueue(transaction);
+            if (durabilityOf(transaction) == Durability.FLUSH) {
+                pendingFlushes.add(flushed);
+            }
+        }
+        if (pendingFlushes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(pendingFlushes.toArray(new CompletableFuture<?>[0]))
+            .orTimeout(flushWaitMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a transaction for the next batch
+     * @param transaction The transaction to record
+     * @return Future completed once the batch holding the record is committed
+     */
+    public CompletableFuture<Void> enqueue(Transaction transaction) {
+        PendingRecord pending = new PendingRecord(transaction);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing audit record", e);
+        }
+        return pending.flushed;
+    }
+
+    /**
+     * Get a snapshot of the writer statistics
+     * @return The audit writer statistics
+     */
+    public AuditStats getStats() {
+        long flushes = flushCount.get();
+        return new AuditStats(
+            queue.size(),
+            recordsWritten.get(),
+            recordsFailed.get(),
+            flushes,
+            toMillis(lastFlushNanos),
+            flushes == 0 ? 0 : toMillis(totalFlushNanos.get() / flushes),
+            toMillis(maxFlushNanos.get())
+        );
+    }
+
+    private Durability durabilityOf(Transaction transaction) {
+        return transaction.getStatus() == Transaction.TransactionStatus.SUCCESS ? successDurability : declineDurability;
+    }
+
+    private void runFlushLoop() {
+        List<PendingRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                flushByShard(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<PendingRecord> batch) throws InterruptedException {
+        PendingRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flushByShard(List<PendingRecord> batch) {
+        if (shardRouter.getShardCount() == 1) {
+            flush(batch);
+            return;
+        }
+
+        // One commit per shard, so a failing shard only fails its own records
+        Map<Integer, List<PendingRecord>> batchesByShard = new TreeMap<>();
+        for (PendingRecord pending : batch) {
+            batchesByShard.computeIfAbsent(shardRouter.shardFor(pending.transaction.getCardNumber()),
+                shard -> new ArrayList<>()).add(pending);
+        }
+        batchesByShard.forEach((shard, shardBatch) -> shardRouter.onShard(shard, () -> {
+            flush(shardBatch);
+            return null;
+        }));
+    }
+
+    private void flush(List<PendingRecord> batch) {
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (PendingRecord pending : batch) {
+            transactions.add(pending.transaction);
+        }
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> transactionRepository.saveAll(transactions));
+        } catch (RuntimeException e) {
+            logger.error("Failed to write {} audit records", batch.size(), e);
+            recordsFailed.addAndGet(batch.size());
+            for (PendingRecord pending : batch) {
+                pending.flushed.completeExceptionally(e);
+            }
+            return;
+        }
+        recordFlushLatency(System.nanoTime() - start);
+        recordsWritten.addAndGet(batch.size());
+
+        // Publish before releasing FLUSH callers so they find their records in the recent history
+        try {
+            eventPublisher.publishEvent(new TransactionsRecordedEvent(transactions));
+        } catch (RuntimeException e) {
+            logger.error("Failed to publish {} recorded transactions", transactions.size(), e);
+        }
+
+        for (PendingRecord pending : batch) {
+            pending.flushed.complete(null);
+        }
+    }
+
+    private void recordFlushLatency(long nanos) {
+        flushCount.incrementAndGet();
+        totalFlushNanos.addAndGet(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+        lastFlushNanos = nanos;
+    }
+
+    /**
+     * Wait on the calling thread for queued records, at most for the flush wait
+     * @param flushed The future returned when the records were queued
+     * @throws IllegalStateException If the records were not written in time
+     */
+    public void awaitFlush(CompletableFuture<Void> flushed) {
+        try {
+            flushed.get(flushWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for audit flush", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IllegalStateException("Timed out waiting for audit flush", e.getCause());
+            }
+            throw new IllegalStateException("Audit record could not be written", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for audit flush", e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static class PendingRecord {
+        private final Transaction transaction;
+        private final CompletableFuture<Void> flushed = new CompletableFuture<>();
+
+        PendingRecord(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+
+    /**
+     * Point-in-time view of the audit writer
+     */
+    public static class AuditStats {
+        private final int queueDepth;
+        private final long recordsWritten;
+        private final long recordsFailed;
+        private final long flushCount;
+        private final double lastFlushMillis;
+        private final double averageFlushMillis;
+        private final double maxFlushMillis;
+
+        public AuditStats(int queueDepth, long recordsWritten, long recordsFailed, long flushCount,
+                          double lastFlushMillis, double averageFlushMillis, double maxFlushMillis) {
+            this.queueDepth = queueDepth;
+            this.recordsWritten = recordsWritten;
+            this.recordsFailed = recordsFailed;
+            this.flushCount = flushCount;
+            this.lastFlushMillis = lastFlushMillis;
+            this.averageFlushMillis = averageFlushMillis;
+            this.maxFlushMillis = maxFlushMillis;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getRecordsWritten() {
+            return recordsWritten;
+        }
+
+        public long getRecordsFailed() {
+            return recordsFailed;
+        }
+
+        public long getFlushCount() {
+            return flushCount;
+        }
+
+        public double getLastFlushMillis() {
+            return lastFlushMillis;
+        }
+
+        public double getAverageFlushMillis() {
+            return averageFlushMillis;
+        }
+
+        public double getMaxFlushMillis() {
+            return maxFlushMillis;
+        }
+    }
+}
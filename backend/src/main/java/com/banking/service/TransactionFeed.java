@@ -0,0 +1,328 @@
+package com.banking.service;
+
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live feed of recorded transactions for Server-Sent Events subscribers.
+ *
+ * Committed transactions are published into a preallocated ring buffer by
+ * sequence number; publishing only stores a reference and never waits for a
+ * subscriber. Each subscriber keeps its own cursor into the ring and is
+ * drained by a small dispatcher pool, so a slow client only delays itself.
+ * A subscriber that falls more than the ring capacity behind is either
+ * resynced to the live position with a "resync" event or dropped.
+ */
+@Component
+public class TransactionFeed {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TransactionFeed.class);
+    
+    /**
+     * What happens to a subscriber whose events were overwritten before delivery
+     */
+    public enum LagPolicy {
+        /** Skip to the live position and tell the client how many events it missed */
+        RESYNC,
+        /** Close the stream; the client reconnects with Last-Event-ID */
+        DROP
+    }
+    
+    @Value("${banking.feed.capacity:4096}")
+    private int configuredCapacity;
+    
+    @Value("${banking.feed.max-subscribers:100}")
+    private int maxSubscribers;
+    
+    @Value("${banking.feed.dispatch-threads:4}")
+    private int dispatchThreads;
+    
+    @Value("${banking.feed.batch-size:256}")
+    private int batchSize;
+    
+    @Value("${banking.feed.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    
+    @Value("${banking.feed.lag-policy:RESYNC}")
+    private LagPolicy lagPolicy;
+    
+    private AtomicReferenceArray<Transaction> ring;
+    
+    private int capacity;
+    
+    private int mask;
+    
+    // Next sequence to publish; every sequence below it has been written to the ring
+    private final AtomicLong published = new AtomicLong();
+    
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    
+    private ThreadPoolExecutor dispatcher;
+    
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    
+    @PostConstruct
+    public void start() {
+        capacity = Integer.highestOneBit(Math.max(2, configuredCapacity - 1)) << 1;
+        mask = capacity - 1;
+        ring = new AtomicReferenceArray<>(capacity);
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "transaction-feed-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        logger.info("Started transaction feed with a ring of {} and {} dispatch threads", capacity, dispatchThreads);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            close(subscriber);
+        }
+    }
+    
+    /**
+     * Publish committed transactions to every subscriber
+     * @param event The committed transactions
+     */
+    @EventListener
+    public void onTransactionsRecorded(TransactionsRecordedEvent event) {
+        for (Transaction transaction : event.getTransactions()) {
+            publish(transaction);
+        }
+        for (Subscriber subscriber : subscribers) {
+            schedule(subscriber);
+        }
+    }
+    
+    /**
+     * Open a new subscription
+     * @param lastEventId The id of the last event the client received, or null to start with new transactions
+     * @return The emitter streaming the feed
+     * @throws IllegalStateException If the subscriber limit is reached
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many feed subscribers");
+        }
+        
+        long start = published.get();
+        Long resumeFrom = parseResumePosition(lastEventId);
+        if (resumeFrom != null && resumeFrom <= start && start - resumeFrom < capacity) {
+            start = resumeFrom;
+        }
+        
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, start);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        subscribers.add(subscriber);
+        schedule(subscriber);
+        return emitter;
+    }
+    
+    /**
+     * Ask every subscriber to send a heartbeat so closed connections are detected
+     */
+    @Scheduled(fixedDelayString = "${banking.feed.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        }
+    }
+    
+    /**
+     * Get a snapshot of the feed statistics
+     * @return The feed statistics
+     */
+    public FeedStats getStats() {
+        long head = published.get();
+        long maxLag = 0;
+        for (Subscriber subscriber : subscribers) {
+            maxLag = Math.max(maxLag, head - subscriber.cursor);
+        }
+        return new FeedStats(head, subscribers.size(), maxLag, delivered.sum(), resyncs.sum(), drops.sum());
+    }
+    
+    // Called from the audit writer thread only
+    private void publish(Transaction transaction) {
+        long sequence = published.get();
+        ring.set((int) (sequence & mask), transaction);
+        published.set(sequence + 1);
+    }
+    
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.active && subscriber.scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+    
+    private void drain(Subscriber subscriber) {
+        try {
+            int sent = 0;
+            while (subscriber.active && sent < batchSize) {
+                long sequence = subscriber.cursor;
+                if (sequence >= published.get()) {
+                    break;
+                }
+                Transaction transaction = ring.get((int) (sequence & mask));
+                // The slot may have been reused for sequence + capacity while it was read
+                if (published.get() - sequence > capacity - 1) {
+                    handleLag(subscriber);
+                    continue;
+                }
+                subscriber.emitter.send(SseEmitter.event()
+                    .id(Long.toString(sequence))
+                    .name("transaction")
+                    .data(transaction));
+                subscriber.cursor = sequence + 1;
+                delivered.increment();
+                sent++;
+            }
+            if (subscriber.heartbeatDue && subscriber.active) {
+                subscriber.heartbeatDue = false;
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter was already completed
+            remove(subscriber);
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        
+        if (subscriber.active && subscriber.cursor < published.get()) {
+            schedule(subscriber);
+        }
+    }
+    
+    private void handleLag(Subscriber subscriber) throws IOException {
+        if (lagPolicy == LagPolicy.DROP) {
+            drops.increment();
+            close(subscriber);
+            return;
+        }
+        long live = published.get();
+        long missed = live - subscriber.cursor;
+        subscriber.cursor = live;
+        resyncs.increment();
+        subscriber.emitter.send(SseEmitter.event()
+            .name("resync")
+            .data(Collections.singletonMap("missed", missed)));
+    }
+    
+    private void remove(Subscriber subscriber) {
+        subscriber.active = false;
+        subscribers.remove(subscriber);
+    }
+    
+    private void close(Subscriber subscriber) {
+        remove(subscriber);
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            // The connection is already gone
+            logger.debug("Feed subscriber connection closed before completion", e);
+        }
+    }
+    
+    private static Long parseResumePosition(String lastEventId) {
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId) + 1;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Written only by the drain task holding the scheduled flag
+        private volatile long cursor;
+        private volatile boolean active = true;
+        private volatile boolean heartbeatDue;
+        
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+    
+    /**
+     * Point-in-time view of the feed
+     */
+    public static class FeedStats {
+        private final long published;
+        private final int subscribers;
+        private final long maxSubscriberLag;
+        private final long delivered;
+        private final long resyncs;
+        private final long drops;
+        
+        public FeedStats(long published, int subscribers, long maxSubscriberLag, long delivered, long resyncs, long drops) {
+            this.published = published;
+            this.subscribers = subscribers;
+            this.maxSubscriberLag = maxSubscriberLag;
+            this.delivered = delivered;
+            this.resyncs = resyncs;
+            this.drops = drops;
+        }
+        
+        public long getPublished() {
+            return published;
+        }
+        
+        public int getSubscribers() {
+            return subscribers;
+        }
+        
+        public long getMaxSubscriberLag() {
+            return maxSubscriberLag;
+        }
+        
+        public long getDelivered() {
+            return delivered;
+        }
+        
+        public long getResyncs() {
+            return resyncs;
+        }
+        
+        public long getDrops() {
+            return drops;
+        }
+    }
+}
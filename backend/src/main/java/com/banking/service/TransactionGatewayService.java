@@ -3,7 +3,7 @@ package com.banking.service;
 import com.banking.dto.TransactionRequest;
 import com.banking.dto.TransactionResponse;
 import com.banking.model.Transaction;
-import com.banking.repository.TransactionRepository;
+import com.banking.util.BinRoutingTable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -12,11 +12,28 @@ import java.math.BigDecimal;
 @Service
 public class TransactionGatewayService {
     
+    /**
+     * Response to an amount that is missing or not positive
+     */
+    public static final String INVALID_AMOUNT_MESSAGE = "Invalid amount";
+    
+    @Autowired
+    private ProcessorClient processorClient;
+    
+    @Autowired
+    private TransactionAuditWriter transactionAuditWriter;
+    
     @Autowired
-    private TransactionProcessorService transactionProcessorService;
+    private BinRoutingService binRoutingService;
     
     @Autowired
-    private TransactionRepository transactionRepository;
+    private TransactionMetrics transactionMetrics;
+    
+    @Autowired
+    private PinAttemptTracker pinAttemptTracker;
+    
+    @Autowired
+    private CardNumberFilter cardNumberFilter;
     
     /**
      * Process transaction request (System 1 - Gateway)
@@ -24,37 +41,64 @@ public class TransactionGatewayService {
      * @return Transaction response
      */
     public TransactionResponse processTransaction(TransactionRequest request) {
-        // Basic validation
-        if (!isValidCardNumber(request.getCardNumber())) {
-            return createDeclinedResponse("Invalid card number format");
+        long start = System.nanoTime();
+        TransactionResponse response = screen(request);
+        if (response == null) {
+            // Route to System 2, in this process or on a processor node
+            response = processorClient.process(request);
+        }
+        transactionMetrics.recordTotal(start);
+        transactionMetrics.recordOutcome(request.getType(), response);
+        return response;
+    }
+    
+    /**
+     * Run the gateway validation and routing checks
+     * @param request The transaction request
+     * @return The declined response, or null when the request should go to System 2
+     */
+    TransactionResponse screen(TransactionRequest request) {
+        // Card number validation and BIN routing in a single pass
+        long start = System.nanoTime();
+        BinRoutingTable.Route route = binRoutingService.route(request.getCardNumber());
+        transactionMetrics.record(TransactionMetrics.Stage.ROUTING, start);
+        if (route.getAction() == BinRoutingTable.Action.INVALID) {
+            return createDeclinedResponse(route.getTarget());
         }
         
+        // Cards locked after repeated wrong PINs are declined without any database work
+        if (pinAttemptTracker.rejectIfLocked(request.getCardNumber())) {
+            return createDeclinedResponse(PinAttemptTracker.LOCKED_MESSAGE);
+        }
+        
+        // Basic validation
+        start = System.nanoTime();
+        String invalidReason = null;
         if (!isValidAmount(request.getAmount())) {
-            return createDeclinedResponse("Invalid amount");
+            invalidReason = INVALID_AMOUNT_MESSAGE;
+        } else if (!isValidTransactionType(request.getType())) {
+            invalidReason = TransactionProcessorService.INVALID_TYPE_MESSAGE;
+        }
+        transactionMetrics.record(TransactionMetrics.Stage.VALIDATION, start);
+        if (invalidReason != null) {
+            return createDeclinedResponse(invalidReason);
         }
         
-        if (!isValidTransactionType(request.getType())) {
-            return createDeclinedResponse("Invalid transaction type");
+        // Routing logic - decline card ranges that are not routed to a processor
+        if (route.getAction() == BinRoutingTable.Action.DECLINE) {
+            Transaction declinedTransaction = createDeclinedTransaction(request, route.getTarget());
+            start = System.nanoTime();
+            transactionAuditWriter.record(declinedTransaction);
+            transactionMetrics.record(TransactionMetrics.Stage.AUDIT_WRITE, start);
+            return createDeclinedResponse(route.getTarget());
         }
         
-        // Routing logic - only process cards starting with '4'
-        if (!request.getCardNumber().startsWith("4")) {
-            Transaction declinedTransaction = createDeclinedTransaction(request, "Card range not supported");
-            transactionRepository.save(declinedTransaction);
-            return createDeclinedResponse("Card range not supported");
+        // Card numbers that were never provisioned are declined without a card lookup
+        if (!cardNumberFilter.mightExist(request.getCardNumber())) {
+            return createDeclinedResponse(TransactionProcessorService.INVALID_CARD_MESSAGE);
         }
         
-        // Route to System 2 for processing
-        return transactionProcessorService.processTransaction(request);
-    }
-    
-    /**
-     * Validate card number format
-     * @param cardNumber The card number to validate
-     * @return true if valid, false otherwise
-     */
-    private boolean isValidCardNumber(String cardNumber) {
-        return cardNumber != null && cardNumber.matches("^\\d{16}$");
+        return null;
     }
     
     /**
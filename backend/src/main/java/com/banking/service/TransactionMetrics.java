@@ -0,0 +1,218 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Micrometer instrumentation for the transaction pipeline.
+ *
+ * Every stage timer and outcome counter is registered once and looked up
+ * without going through the registry, and stages are timed with plain
+ * System.nanoTime() readings, so the hot path adds no allocation beyond the
+ * histogram update itself.
+ */
+@Component
+public class TransactionMetrics {
+    
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+    
+    /**
+     * Timed stages of a transaction
+     */
+    public enum Stage {
+        VALIDATION("validation"),
+        ROUTING("routing"),
+        CARD_LOOKUP("card_lookup"),
+        PIN_VERIFICATION("pin_verification"),
+        BALANCE_UPDATE("balance_update"),
+        AUDIT_WRITE("audit_write");
+        
+        private final String tag;
+        
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+    
+    /**
+     * Reason tag of an outcome counter; any message without a reason of its own,
+     * such as a configured BIN decline reason or a validation message, counts as OTHER
+     */
+    public enum Reason {
+        NONE("none"),
+        INVALID_CARD("invalid_card", TransactionProcessorService.INVALID_CARD_MESSAGE, BinRoutingService.INVALID_REASON),
+        INVALID_PIN("invalid_pin", TransactionProcessorService.INVALID_PIN_MESSAGE),
+        CARD_LOCKED("card_locked", PinAttemptTracker.LOCKED_MESSAGE),
+        INSUFFICIENT_BALANCE("insufficient_balance", TransactionProcessorService.INSUFFICIENT_BALANCE_MESSAGE),
+        INVALID_AMOUNT("invalid_amount", TransactionGatewayService.INVALID_AMOUNT_MESSAGE),
+        INVALID_TYPE("invalid_type", TransactionProcessorService.INVALID_TYPE_MESSAGE, "Invalid transaction type for top-up"),
+        RANGE_NOT_SUPPORTED("range_not_supported", BinRoutingService.DEFAULT_DECLINE_REASON),
+        SYSTEM_BUSY("system_busy", TransactionAdmissionExecutor.BUSY_MESSAGE),
+        OUTCOME_UNKNOWN("outcome_unknown", ProcessorClient.OUTCOME_UNKNOWN),
+        KEY_REUSED("key_reused", IdempotencyService.KEY_REUSED_MESSAGE),
+        OTHER("other");
+        
+        private static final Map<String, Reason> BY_MESSAGE = new HashMap<>();
+        
+        static {
+            for (Reason reason : values()) {
+                for (String message : reason.messages) {
+                    BY_MESSAGE.put(message, reason);
+                }
+            }
+        }
+        
+        private final String tag;
+        private final String[] messages;
+        
+        Reason(String tag, String... messages) {
+            this.tag = tag;
+            this.messages = messages;
+        }
+        
+        /**
+         * Get the reason of a response
+         * @param response The response returned for a transaction
+         * @return The reason, NONE for approvals
+         */
+        public static Reason of(TransactionResponse response) {
+            if (response.isSuccess()) {
+                return NONE;
+            }
+            Reason reason = response.getMessage() == null ? null : BY_MESSAGE.get(response.getMessage());
+            return reason != null ? reason : OTHER;
+        }
+    }
+    
+    private static final String[] TYPE_TAGS = {"withdraw", "topup", "other"};
+    
+    private static final int REASON_COUNT = Reason.values().length;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private TransactionAuditWriter transactionAuditWriter;
+    
+    @Autowired
+    private CardCache cardCache;
+    
+    @Autowired
+    private CardLaneExecutor cardLaneExecutor;
+    
+    @Autowired
+    private TransactionAdmissionExecutor transactionAdmissionExecutor;
+    
+    @Autowired
+    private TransactionFeed transactionFeed;
+    
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    
+    private Timer totalTimer;
+    
+    // Outcome counters indexed by type and reason, registered on first use
+    private final AtomicReferenceArray<Counter> outcomeCounters =
+        new AtomicReferenceArray<>(TYPE_TAGS.length * REASON_COUNT);
+    
+    @PostConstruct
+    public void init() {
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("banking.transaction.stage")
+                .description("Time spent in one stage of transaction processing")
+                .tag("stage", stage.tag)
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry);
+        }
+        totalTimer = Timer.builder("banking.transaction.duration")
+            .description("Gateway processing time of a transaction")
+            .publishPercentiles(PERCENTILES)
+            .register(meterRegistry);
+        
+        Gauge.builder("banking.audit.queue.depth", transactionAuditWriter, writer -> writer.getStats().getQueueDepth())
+            .description("Transaction records waiting to be written")
+            .register(meterRegistry);
+        Gauge.builder("banking.card.cache.size", cardCache, cache -> cache.getStats().getSize())
+            .description("Cards held in the card cache")
+            .register(meterRegistry);
+        Gauge.builder("banking.card.cache.hit.ratio", cardCache, cache -> cache.getStats().getHitRatio())
+            .description("Card cache hit ratio")
+            .register(meterRegistry);
+        Gauge.builder("banking.lanes.queued", cardLaneExecutor, CardLaneExecutor::getQueuedTasks)
+            .description("Tasks waiting on the card lanes")
+            .register(meterRegistry);
+        Gauge.builder("banking.admission.queue.size", transactionAdmissionExecutor, TransactionAdmissionExecutor::getQueueSize)
+            .description("Transactions waiting for a processing worker")
+            .register(meterRegistry);
+        Gauge.builder("banking.admission.active", transactionAdmissionExecutor, TransactionAdmissionExecutor::getActiveCount)
+            .description("Processing workers currently busy")
+            .register(meterRegistry);
+        FunctionCounter.builder("banking.admission.rejected", transactionAdmissionExecutor, TransactionAdmissionExecutor::getRejectedCount)
+            .description("Transactions rejected with 429 since startup")
+            .register(meterRegistry);
+        Gauge.builder("banking.feed.subscribers", transactionFeed, feed -> feed.getStats().getSubscribers())
+            .description("Open live feed subscriptions")
+            .register(meterRegistry);
+        Gauge.builder("banking.feed.subscriber.lag.max", transactionFeed, feed -> feed.getStats().getMaxSubscriberLag())
+            .description("Events the furthest behind live feed subscriber has yet to receive")
+            .register(meterRegistry);
+        FunctionCounter.builder("banking.feed.resyncs", transactionFeed, feed -> feed.getStats().getResyncs())
+            .description("Live feed subscribers skipped ahead after falling behind the ring")
+            .register(meterRegistry);
+        FunctionCounter.builder("banking.feed.drops", transactionFeed, feed -> feed.getStats().getDrops())
+            .description("Live feed subscribers closed after falling behind the ring")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Record the time since a start reading for a stage
+     * @param stage The stage that finished
+     * @param startNanos The System.nanoTime() reading taken when the stage started
+     */
+    public void record(Stage stage, long startNanos) {
+        stageTimers[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Record the total gateway time of a transaction
+     * @param startNanos The System.nanoTime() reading taken when the transaction arrived
+     */
+    public void recordTotal(long startNanos) {
+        totalTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Count a transaction outcome
+     * @param type The requested transaction type
+     * @param response The response returned for the transaction
+     */
+    public void recordOutcome(String type, TransactionResponse response) {
+        int typeIndex = "withdraw".equals(type) ? 0 : "topup".equals(type) ? 1 : 2;
+        Reason reason = Reason.of(response);
+        int index = typeIndex * REASON_COUNT + reason.ordinal();
+        
+        Counter counter = outcomeCounters.get(index);
+        if (counter == null) {
+            // Registering the same meter twice returns the existing one, so a racing first use is harmless
+            counter = Counter.builder("banking.transactions")
+                .description("Processed transactions by outcome and decline reason")
+                .tag("outcome", response.isSuccess() ? "approved" : "declined")
+                .tag("type", TYPE_TAGS[typeIndex])
+                .tag("reason", reason.tag)
+                .register(meterRegistry);
+            outcomeCounters.set(index, counter);
+        }
+        counter.increment();
+    }
+}
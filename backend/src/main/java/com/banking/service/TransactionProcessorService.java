@@ -2,26 +2,70 @@ package com.banking.service;
 
 import com.banking.dto.TransactionRequest;
 import com.banking.dto.TransactionResponse;
+import com.banking.event.BalanceChangedEvent;
 import com.banking.model.Card;
 import com.banking.model.Transaction;
 import com.banking.repository.CardRepository;
-import com.banking.repository.TransactionRepository;
 import com.banking.util.PinHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class TransactionProcessorService {
     
+    private static final Logger logger = LoggerFactory.getLogger(TransactionProcessorService.class);
+    
+    /**
+     * Response to a request whose PIN does not match the card
+     */
+    public static final String INVALID_PIN_MESSAGE = "Invalid PIN";
+    
+    /**
+     * Response to a card number with no card behind it
+     */
+    public static final String INVALID_CARD_MESSAGE = "Invalid card";
+    
+    /**
+     * Response to a request that is neither a withdrawal nor a top-up
+     */
+    public static final String INVALID_TYPE_MESSAGE = "Invalid transaction type";
+    
+    /**
+     * Response to a withdrawal larger than the card balance
+     */
+    public static final String INSUFFICIENT_BALANCE_MESSAGE = "Insufficient balance";
+    
     @Autowired
     private CardRepository cardRepository;
     
     @Autowired
-    private TransactionRepository transactionRepository;
+    private CardCache cardCache;
+    
+    @Autowired
+    private TransactionAuditWriter transactionAuditWriter;
+    
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private PinAttemptTracker pinAttemptTracker;
     
     /**
      * Process transaction (System 2 - Processor)
@@ -30,88 +74,194 @@ public class TransactionProcessorService {
      */
     @Transactional
     public TransactionResponse processTransaction(TransactionRequest request) {
+        return processCardTransactions(request.getCardNumber(), Collections.singletonList(request)).get(0);
+    }
+    
+    /**
+     * Process several transactions for the same card in submission order.
+     * The card is loaded once, the balance is updated once and the audit
+     * records are written together.
+     * @param cardNumber The card number shared by all requests
+     * @param requests The transaction requests in submission order
+     * @return Transaction responses in the same order
+     */
+    @Transactional
+    public List<TransactionResponse> processCardTransactions(String cardNumber, List<TransactionRequest> requests) {
+        List<TransactionResponse> responses = new ArrayList<>(requests.size());
+        List<Transaction> records = new ArrayList<>(requests.size());
+        
         // Find the card
-        Optional<Card> cardOptional = cardRepository.findByCardNumber(request.getCardNumber());
+        long start = System.nanoTime();
+        Optional<Card> cardOptional = cardCache.get(cardNumber);
+        transactionMetrics.record(TransactionMetrics.Stage.CARD_LOOKUP, start);
         if (cardOptional.isEmpty()) {
-            Transaction declinedTransaction = createDeclinedTransaction(request, "Invalid card");
-            transactionRepository.save(declinedTransaction);
-            return new TransactionResponse(false, "Invalid card");
+            for (TransactionRequest request : requests) {
+                responses.add(decline(request, INVALID_CARD_MESSAGE, records));
+            }
+            writeAudit(records);
+            return responses;
         }
         
-        Card card = cardOptional.get();
+        CardState state = new CardState(cardOptional.get());
+        for (TransactionRequest request : requests) {
+            responses.add(processRequest(state, request, records));
+        }
+        
+        if (state.balance.compareTo(state.card.getBalance()) != 0) {
+            start = System.nanoTime();
+            updateBalance(state.card, state.balance);
+            transactionMetrics.record(TransactionMetrics.Stage.BALANCE_UPDATE, start);
+        }
+        writeAudit(records);
+        return responses;
+    }
+    
+    /**
+     * Process a single request against the running card state
+     * @param state The card and its balance so far
+     * @param request The transaction request
+     * @param records Collects the audit records
+     * @return Transaction response
+     */
+    private TransactionResponse processRequest(CardState state, TransactionRequest request, List<Transaction> records) {
+        // A card locked by an earlier request, e.g. in the same batch or through another gateway
+        if (pinAttemptTracker.rejectIfLocked(request.getCardNumber())) {
+            return new TransactionResponse(false, PinAttemptTracker.LOCKED_MESSAGE);
+        }
         
         // Validate PIN
-        if (!PinHasher.verifyPin(request.getPin(), card.getPinHash())) {
-            Transaction declinedTransaction = createDeclinedTransaction(request, "Invalid PIN");
-            transactionRepository.save(declinedTransaction);
-            return new TransactionResponse(false, "Invalid PIN");
+        long start = System.nanoTime();
+        boolean pinValid = PinHasher.verifyPin(request.getPin(), state.card.getPinHash());
+        transactionMetrics.record(TransactionMetrics.Stage.PIN_VERIFICATION, start);
+        if (!pinValid) {
+            pinAttemptTracker.recordFailure(request.getCardNumber());
+            return decline(request, INVALID_PIN_MESSAGE, records);
         }
+        pinAttemptTracker.recordSuccess(request.getCardNumber());
         
         // Process transaction based on type
         if ("withdraw".equals(request.getType())) {
-            return processWithdrawal(card, request);
+            return processWithdrawal(state, request, records);
         } else if ("topup".equals(request.getType())) {
-            return processTopup(card, request);
+            return processTopup(state, request, records);
         } else {
-            Transaction declinedTransaction = createDeclinedTransaction(request, "Invalid transaction type");
-            transactionRepository.save(declinedTransaction);
-            return new TransactionResponse(false, "Invalid transaction type");
+            return decline(request, INVALID_TYPE_MESSAGE, records);
         }
     }
     
     /**
      * Process withdrawal transaction
-     * @param card The card to withdraw from
+     * @param state The card to withdraw from and its balance so far
      * @param request The transaction request
+     * @param records Collects the audit records
      * @return Transaction response
      */
-    private TransactionResponse processWithdrawal(Card card, TransactionRequest request) {
-        BigDecimal currentBalance = card.getBalance();
+    private TransactionResponse processWithdrawal(CardState state, TransactionRequest request, List<Transaction> records) {
+        BigDecimal currentBalance = state.balance;
         BigDecimal withdrawalAmount = request.getAmount();
         
         // Check sufficient balance
         if (currentBalance.compareTo(withdrawalAmount) < 0) {
-            Transaction declinedTransaction = createDeclinedTransaction(request, "Insufficient balance");
-            transactionRepository.save(declinedTransaction);
-            return new TransactionResponse(false, "Insufficient balance");
+            return decline(request, INSUFFICIENT_BALANCE_MESSAGE, records);
         }
         
         // Update balance
         BigDecimal newBalance = currentBalance.subtract(withdrawalAmount);
-        card.setBalance(newBalance);
-        cardRepository.save(card);
+        state.balance = newBalance;
         
         // Create successful transaction record
         Transaction transaction = createSuccessfulTransaction(request, "Withdrawal successful");
         transaction.setBalanceAfter(newBalance);
-        transactionRepository.save(transaction);
+        records.add(transaction);
         
-        return new TransactionResponse(true, "Withdrawal successful", 
-            card.getCardNumber(), "withdraw", withdrawalAmount, newBalance);
+        return new TransactionResponse(true, "Withdrawal successful",
+            state.card.getCardNumber(), "withdraw", withdrawalAmount, newBalance);
     }
     
     /**
      * Process top-up transaction
-     * @param card The card to top up
+     * @param state The card to top up and its balance so far
      * @param request The transaction request
+     * @param records Collects the audit records
      * @return Transaction response
      */
-    private TransactionResponse processTopup(Card card, TransactionRequest request) {
-        BigDecimal currentBalance = card.getBalance();
+    private TransactionResponse processTopup(CardState state, TransactionRequest request, List<Transaction> records) {
+        BigDecimal currentBalance = state.balance;
         BigDecimal topupAmount = request.getAmount();
         
         // Update balance
         BigDecimal newBalance = currentBalance.add(topupAmount);
-        card.setBalance(newBalance);
-        cardRepository.save(card);
+        state.balance = newBalance;
         
         // Create successful transaction record
         Transaction transaction = createSuccessfulTransaction(request, "Top-up successful");
         transaction.setBalanceAfter(newBalance);
-        transactionRepository.save(transaction);
+        records.add(transaction);
         
-        return new TransactionResponse(true, "Top-up successful", 
-            card.getCardNumber(), "topup", topupAmount, newBalance);
+        return new TransactionResponse(true, "Top-up successful",
+            state.card.getCardNumber(), "topup", topupAmount, newBalance);
+    }
+    
+    /**
+     * Persist a new card balance, write it through to the card cache and
+     * publish the change for the balance read model
+     * @param card The cached card
+     * @param newBalance The new balance
+     */
+    private void updateBalance(Card card, BigDecimal newBalance) {
+        LocalDateTime updatedAt = LocalDateTime.now();
+        cardRepository.updateBalance(card.getId(), newBalance, updatedAt);
+        cardCache.writeThrough(card, newBalance, updatedAt);
+        eventPublisher.publishEvent(new BalanceChangedEvent(card.getCardNumber(), newBalance, updatedAt));
+    }
+    
+    /**
+     * Queue the collected audit records once the balance update has committed, so a
+     * rolled-back transaction leaves no record behind; without a transaction they are
+     * written right away. Inside a DurableAck capture the wait for the flush is left
+     * to the caller of the lane.
+     * @param records The audit records
+     */
+    private void writeAudit(List<Transaction> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recordAudit(records);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    recordAudit(records);
+                } catch (IllegalStateException e) {
+                    // The balance is committed and must be reported as such; the writer counts failed records
+                    logger.warn("{} audit records not confirmed after commit: {}", records.size(), e.getMessage());
+                }
+            }
+        });
+    }
+    
+    private void recordAudit(List<Transaction> records) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> flushed = transactionAuditWriter.enqueueAll(records);
+        transactionMetrics.record(TransactionMetrics.Stage.AUDIT_WRITE, start);
+        if (!DurableAck.defer(flushed)) {
+            transactionAuditWriter.awaitFlush(flushed);
+        }
+    }
+    
+    /**
+     * Decline a request and collect its audit record
+     * @param request The original request
+     * @param message The decline message
+     * @param records Collects the audit records
+     * @return Transaction response
+     */
+    private TransactionResponse decline(TransactionRequest request, String message, List<Transaction> records) {
+        records.add(createDeclinedTransaction(request, message));
+        return new TransactionResponse(false, message);
     }
     
     /**
@@ -147,4 +297,17 @@ public class TransactionProcessorService {
         transaction.setMessage(message);
         return transaction;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * A cached card and its balance while a group of requests is applied
+     */
+    private static class CardState {
+        private final Card card;
+        private BigDecimal balance;
+        
+        CardState(Card card) {
+            this.card = card;
+            this.balance = card.getBalance();
+        }
+    }
+}
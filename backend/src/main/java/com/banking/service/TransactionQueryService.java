@@ -0,0 +1,169 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionFilter;
+import com.banking.dto.TransactionPage;
+import com.banking.model.Transaction;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Read paths over the transaction ledger that stay bounded in memory.
+ *
+ * Pages are addressed with a keyset cursor on (timestamp, id) instead of an
+ * offset, so every page costs the same no matter how deep it is. Exports read
+ * with a forward-only cursor and detach each row once it was handed on.
+ */
+@Service
+public class TransactionQueryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Find one page of transactions, newest first
+     * @param filter The filters to apply
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param limit The maximum number of transactions to return
+     * @return The page and the cursor of the next one
+     */
+    @Transactional(readOnly = true)
+    public TransactionPage findPage(TransactionFilter filter, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Transaction> query = cb.createQuery(Transaction.class);
+        Root<Transaction> root = query.from(Transaction.class);
+        Path<LocalDateTime> timestamp = root.get("timestamp");
+        Path<Long> id = root.get("id");
+
+        List<Predicate> predicates = filterPredicates(cb, root, filter);
+        if (cursor != null && !cursor.isEmpty()) {
+            Cursor position = Cursor.decode(cursor);
+            predicates.add(cb.or(
+                cb.lessThan(timestamp, position.timestamp),
+                cb.and(cb.equal(timestamp, position.timestamp), cb.lessThan(id, position.id))
+            ));
+        }
+        query.where(predicates.toArray(new Predicate[0]))
+            .orderBy(cb.desc(timestamp), cb.desc(id));
+
+        // Fetch one extra row to know whether another page follows
+        List<Transaction> rows = entityManager.createQuery(query)
+            .setMaxResults(pageSize + 1)
+            .getResultList();
+        if (rows.size() <= pageSize) {
+            return new TransactionPage(rows, null);
+        }
+
+        List<Transaction> items = new ArrayList<>(rows.subList(0, pageSize));
+        return new TransactionPage(items, cursorAfter(items.get(items.size() - 1)));
+    }
+
+    /**
+     * Get the cursor of the page following a transaction
+     * @param last The last transaction of a page
+     * @return The cursor of the next page
+     */
+    public static String cursorAfter(Transaction last) {
+        return new Cursor(last.getTimestamp(), last.getId()).encode();
+    }
+
+    /**
+     * Stream every matching transaction, newest first, to a consumer
+     * @param filter The filters to apply
+     * @param consumer Receives each transaction; it must not keep a reference to it
+     */
+    @Transactional(readOnly = true)
+    public void streamTransactions(TransactionFilter filter, Consumer<Transaction> consumer) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Transaction> query = cb.createQuery(Transaction.class);
+        Root<Transaction> root = query.from(Transaction.class);
+        query.where(filterPredicates(cb, root, filter).toArray(new Predicate[0]))
+            .orderBy(cb.desc(root.get("timestamp")), cb.desc(root.get("id")));
+
+        TypedQuery<Transaction> typedQuery = entityManager.createQuery(query)
+            .setHint("org.hibernate.fetchSize", EXPORT_FETCH_SIZE)
+            .setHint("org.hibernate.readOnly", true);
+
+        try (Stream<Transaction> rows = typedQuery.getResultStream()) {
+            Iterator<Transaction> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                consumer.accept(transaction);
+                entityManager.detach(transaction);
+            }
+        }
+    }
+
+    private List<Predicate> filterPredicates(CriteriaBuilder cb, Root<Transaction> root, TransactionFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getCardNumber() != null) {
+            predicates.add(cb.equal(root.get("cardNumber"), filter.getCardNumber()));
+        }
+        if (filter.getStatus() != null) {
+            predicates.add(cb.equal(root.get("status"), filter.getStatus()));
+        }
+        if (filter.getType() != null) {
+            predicates.add(cb.equal(root.get("type"), filter.getType()));
+        }
+        if (filter.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("timestamp"), filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            predicates.add(cb.lessThan(root.get("timestamp"), filter.getTo()));
+        }
+        return predicates;
+    }
+
+    /**
+     * Opaque keyset position: the (timestamp, id) of the last row of a page
+     */
+    private static class Cursor {
+        private final LocalDateTime timestamp;
+        private final long id;
+
+        Cursor(LocalDateTime timestamp, long id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+
+        String encode() {
+            String raw = timestamp + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
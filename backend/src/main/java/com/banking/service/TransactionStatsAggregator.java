@@ -0,0 +1,370 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionFilter;
+import com.banking.event.TransactionsRecordedEvent;
+import com.banking.model.Transaction;
+import com.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Incrementally maintained transaction counts and sums for the admin dashboard.
+ *
+ * Every committed transaction is added to all-time totals and to time buckets
+ * of one minute (last hour), one hour (last day) and one day (last 30 days),
+ * keyed by status, type and decline reason. Buckets are recycled slots of a
+ * fixed ring swapped in with compare-and-set, and each counter is a LongAdder,
+ * so concurrent recording threads never lock or contend on a single cell.
+ * Totals and recent buckets are rebuilt from the ledger at startup.
+ */
+@Component
+public class TransactionStatsAggregator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TransactionStatsAggregator.class);
+    
+    /**
+     * Bucket sizes and how many of each are kept
+     */
+    public enum Granularity {
+        MINUTE(TimeUnit.MINUTES.toMillis(1), 60),
+        HOUR(TimeUnit.HOURS.toMillis(1), 24),
+        DAY(TimeUnit.DAYS.toMillis(1), 30);
+        
+        private final long unitMillis;
+        private final int buckets;
+        
+        Granularity(long unitMillis, int buckets) {
+            this.unitMillis = unitMillis;
+            this.buckets = buckets;
+        }
+    }
+    
+    @Autowired
+    private ShardedLedger shardedLedger;
+    
+    private final ZoneId zone = ZoneId.systemDefault();
+    
+    private final Bucket totals = new Bucket(0);
+    
+    private final Map<Granularity, Series> series = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void rebuild() {
+        for (Granularity granularity : Granularity.values()) {
+            series.put(granularity, new Series(granularity));
+        }
+        
+        // With several shards the same group arrives once per shard and the counts add up
+        for (TransactionRepository.TransactionAggregate aggregate : shardedLedger.aggregateTransactions()) {
+            Key key = Key.of(aggregate.getStatus(), aggregate.getType(), aggregate.getMessage());
+            totals.cell(key).add(aggregate.getCount(), toCents(aggregate.getAmount()));
+        }
+        
+        // Only the day series reaches back far enough to need older rows
+        TransactionFilter recent = new TransactionFilter();
+        recent.setFrom(LocalDateTime.now().minusDays(Granularity.DAY.buckets));
+        long[] rows = new long[1];
+        shardedLedger.streamTransactions(recent, transaction -> {
+            addToSeries(transaction);
+            rows[0]++;
+        });
+        logger.info("Transaction stats rebuilt from the ledger, {} recent transactions bucketed", rows[0]);
+    }
+    
+    /**
+     * Add committed transactions to the aggregates
+     * @param event The committed transactions
+     */
+    @EventListener
+    public void onTransactionsRecorded(TransactionsRecordedEvent event) {
+        for (Transaction transaction : event.getTransactions()) {
+            record(transaction);
+        }
+    }
+    
+    /**
+     * Add a single committed transaction to the aggregates
+     * @param transaction The committed transaction
+     */
+    public void record(Transaction transaction) {
+        totals.cell(Key.of(transaction)).add(1, toCents(transaction.getAmount()));
+        addToSeries(transaction);
+    }
+    
+    /**
+     * Get the all-time totals and the recent buckets of one granularity
+     * @param granularity The bucket size to report
+     * @return The statistics, buckets oldest first
+     */
+    public TransactionStats getStats(Granularity granularity) {
+        long now = System.currentTimeMillis();
+        Series selected = series.get(granularity);
+        long currentEpoch = now / granularity.unitMillis;
+        
+        List<BucketSummary> buckets = new ArrayList<>(granularity.buckets);
+        for (long epoch = currentEpoch - granularity.buckets + 1; epoch <= currentEpoch; epoch++) {
+            Bucket bucket = selected.get(epoch);
+            LocalDateTime start = LocalDateTime.ofInstant(Instant.ofEpochMilli(epoch * granularity.unitMillis), zone);
+            buckets.add(new BucketSummary(start, bucket != null ? bucket.summarize() : Summary.EMPTY));
+        }
+        return new TransactionStats(LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone),
+            granularity.name(), totals.summarize(), buckets);
+    }
+    
+    private void addToSeries(Transaction transaction) {
+        long epochMillis = transaction.getTimestamp().atZone(zone).toInstant().toEpochMilli();
+        Key key = Key.of(transaction);
+        long cents = toCents(transaction.getAmount());
+        for (Series target : series.values()) {
+            target.add(epochMillis, key, cents);
+        }
+    }
+    
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+    
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+    /**
+     * Ring of buckets for one granularity
+     */
+    private static class Series {
+        private final Granularity granularity;
+        private final AtomicReferenceArray<Bucket> slots;
+        
+        Series(Granularity granularity) {
+            this.granularity = granularity;
+            this.slots = new AtomicReferenceArray<>(granularity.buckets);
+        }
+        
+        void add(long epochMillis, Key key, long cents) {
+            long epoch = epochMillis / granularity.unitMillis;
+            int slot = (int) Math.floorMod(epoch, (long) granularity.buckets);
+            Bucket bucket = slots.get(slot);
+            while (bucket == null || bucket.epoch < epoch) {
+                Bucket fresh = new Bucket(epoch);
+                if (slots.compareAndSet(slot, bucket, fresh)) {
+                    bucket = fresh;
+                } else {
+                    bucket = slots.get(slot);
+                }
+            }
+            // Older than the ring reaches; still counted in the totals and coarser series
+            if (bucket.epoch == epoch) {
+                bucket.cell(key).add(1, cents);
+            }
+        }
+        
+        Bucket get(long epoch) {
+            Bucket bucket = slots.get((int) Math.floorMod(epoch, (long) granularity.buckets));
+            return bucket != null && bucket.epoch == epoch ? bucket : null;
+        }
+    }
+    
+    /**
+     * Counters of one time bucket per status, type and decline reason
+     */
+    private static class Bucket {
+        private final long epoch;
+        private final Map<Key, Cell> cells = new ConcurrentHashMap<>();
+        
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+        
+        Cell cell(Key key) {
+            Cell cell = cells.get(key);
+            return cell != null ? cell : cells.computeIfAbsent(key, k -> new Cell());
+        }
+        
+        Summary summarize() {
+            Summary summary = new Summary();
+            cells.forEach((key, cell) -> summary.add(key, cell.count.sum(), cell.cents.sum()));
+            return summary;
+        }
+    }
+    
+    private static class Cell {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+        
+        void add(long transactions, long amountCents) {
+            count.add(transactions);
+            cents.add(amountCents);
+        }
+    }
+    
+    private static class Key {
+        private final Transaction.TransactionStatus status;
+        private final Transaction.TransactionType type;
+        // Decline reason; null for successful transactions
+        private final String reason;
+        
+        private Key(Transaction.TransactionStatus status, Transaction.TransactionType type, String reason) {
+            this.status = status;
+            this.type = type;
+            this.reason = reason;
+        }
+        
+        static Key of(Transaction transaction) {
+            return of(transaction.getStatus(), transaction.getType(), transaction.getMessage());
+        }
+        
+        static Key of(Transaction.TransactionStatus status, Transaction.TransactionType type, String message) {
+            return new Key(status, type, status == Transaction.TransactionStatus.SUCCESS ? null : message);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return status == other.status && type == other.type && Objects.equals(reason, other.reason);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(status, type, reason);
+        }
+    }
+    
+    /**
+     * Count and amount of a group of transactions
+     */
+    public static class Totals {
+        private long count;
+        private long cents;
+        
+        void add(long transactions, long amountCents) {
+            count += transactions;
+            cents += amountCents;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public BigDecimal getAmount() {
+            return fromCents(cents);
+        }
+    }
+    
+    /**
+     * Totals of a bucket broken down by status, type, type and status, and decline reason
+     */
+    public static class Summary extends Totals {
+        static final Summary EMPTY = new Summary();
+        
+        private final Map<String, Totals> byStatus = new TreeMap<>();
+        private final Map<String, Totals> byType = new TreeMap<>();
+        private final Map<String, Map<String, Totals>> byTypeAndStatus = new TreeMap<>();
+        private final Map<String, Totals> byDeclineReason = new TreeMap<>();
+        
+        void add(Key key, long transactions, long amountCents) {
+            add(transactions, amountCents);
+            byStatus.computeIfAbsent(key.status.name(), k -> new Totals()).add(transactions, amountCents);
+            byType.computeIfAbsent(key.type.name(), k -> new Totals()).add(transactions, amountCents);
+            byTypeAndStatus.computeIfAbsent(key.type.name(), k -> new TreeMap<>())
+                .computeIfAbsent(key.status.name(), k -> new Totals()).add(transactions, amountCents);
+            if (key.reason != null) {
+                byDeclineReason.computeIfAbsent(key.reason, k -> new Totals()).add(transactions, amountCents);
+            }
+        }
+        
+        public Map<String, Totals> getByStatus() {
+            return Collections.unmodifiableMap(byStatus);
+        }
+        
+        public Map<String, Totals> getByType() {
+            return Collections.unmodifiableMap(byType);
+        }
+        
+        public Map<String, Map<String, Totals>> getByTypeAndStatus() {
+            return Collections.unmodifiableMap(byTypeAndStatus);
+        }
+        
+        public Map<String, Totals> getByDeclineReason() {
+            return Collections.unmodifiableMap(byDeclineReason);
+        }
+    }
+    
+    /**
+     * Summary of one time bucket
+     */
+    public static class BucketSummary {
+        private final LocalDateTime start;
+        private final Summary summary;
+        
+        public BucketSummary(LocalDateTime start, Summary summary) {
+            this.start = start;
+            this.summary = summary;
+        }
+        
+        public LocalDateTime getStart() {
+            return start;
+        }
+        
+        public Summary getSummary() {
+            return summary;
+        }
+    }
+    
+    /**
+     * All-time totals with the recent buckets of one granularity
+     */
+    public static class TransactionStats {
+        private final LocalDateTime generatedAt;
+        private final String granularity;
+        private final Summary totals;
+        private final List<BucketSummary> buckets;
+        
+        public TransactionStats(LocalDateTime generatedAt, String granularity, Summary totals, List<BucketSummary> buckets) {
+            this.generatedAt = generatedAt;
+            this.granularity = granularity;
+            this.totals = totals;
+            this.buckets = buckets;
+        }
+        
+        public LocalDateTime getGeneratedAt() {
+            return generatedAt;
+        }
+        
+        public String getGranularity() {
+            return granularity;
+        }
+        
+        public Summary getTotals() {
+            return totals;
+        }
+        
+        public List<BucketSummary> getBuckets() {
+            return buckets;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.banking.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable BIN routing table.
+ *
+ * Card number prefixes are stored in a decimal trie packed into a flat int array
+ * (ten child slots per node), so a lookup walks at most one node per digit and
+ * the longest configured prefix wins. Digit validation, the optional Luhn check
+ * and the trie walk all happen in a single pass over the card number.
+ */
+public class BinRoutingTable {
+
+    public static final int CARD_NUMBER_LENGTH = 16;
+
+    private static final int NO_NODE = 0;
+    private static final int NO_ROUTE = -1;
+
+    /**
+     * Outcome of a route lookup
+     */
+    public enum Action {
+        PROCESS, DECLINE, INVALID
+    }
+
+    /**
+     * A configured route with its hit counter
+     */
+    public static class Route {
+        private final String range;
+        private final Action action;
+        private final String target;
+        private final LongAdder hits;
+
+        public Route(String range, Action action, String target, LongAdder hits) {
+            this.range = range;
+            this.action = action;
+            this.target = target;
+            this.hits = hits;
+        }
+
+        public String getRange() {
+            return range;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * Get the decline reason of a DECLINE or INVALID route
+         * @return The decline reason, or null for PROCESS routes
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        void hit() {
+            hits.increment();
+        }
+    }
+
+    private final int[] children;
+    private final int[] nodeRoutes;
+    private final List<Route> routes;
+    private final Route defaultRoute;
+    private final Route invalidRoute;
+    private final boolean luhnCheck;
+
+    private BinRoutingTable(int[] children, int[] nodeRoutes, List<Route> routes, Route defaultRoute,
+                            Route invalidRoute, boolean luhnCheck) {
+        this.children = children;
+        this.nodeRoutes = nodeRoutes;
+        this.routes = routes;
+        this.defaultRoute = defaultRoute;
+        this.invalidRoute = invalidRoute;
+        this.luhnCheck = luhnCheck;
+    }
+
+    /**
+     * Validate and route a card number in a single pass
+     * @param cardNumber The card number to route
+     * @return The matching route, the default route when no prefix matches,
+     *         or the invalid route when the card number is malformed
+     */
+    public Route route(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() != CARD_NUMBER_LENGTH) {
+            invalidRoute.hit();
+            return invalidRoute;
+        }
+
+        int node = 1;
+        int matched = NO_ROUTE;
+        int luhnSum = 0;
+        for (int i = 0; i < CARD_NUMBER_LENGTH; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                invalidRoute.hit();
+                return invalidRoute;
+            }
+
+            // Double every second digit counting from the right-most (check) digit
+            if (((CARD_NUMBER_LENGTH - i) & 1) == 0) {
+                digit *= 2;
+                luhnSum += digit > 9 ? digit - 9 : digit;
+            } else {
+                luhnSum += digit;
+            }
+
+            if (node != NO_NODE) {
+                node = children[node * 10 + cardNumber.charAt(i) - '0'];
+                if (node != NO_NODE && nodeRoutes[node] != NO_ROUTE) {
+                    matched = nodeRoutes[node];
+                }
+            }
+        }
+
+        if (luhnCheck && luhnSum % 10 != 0) {
+            invalidRoute.hit();
+            return invalidRoute;
+        }
+
+        Route route = matched == NO_ROUTE ? defaultRoute : routes.get(matched);
+        route.hit();
+        return route;
+    }
+
+    /**
+     * Get every route including the default and invalid routes
+     * @return The routes in configuration order
+     */
+    public List<Route> getRoutes() {
+        List<Route> all = new ArrayList<>(routes);
+        all.add(defaultRoute);
+        all.add(invalidRoute);
+        return Collections.unmodifiableList(all);
+    }
+
+    public boolean isLuhnCheck() {
+        return luhnCheck;
+    }
+
+    /**
+     * Expand a decimal range of equal-length bounds into the minimal set of prefixes covering it
+     * @param low The inclusive lower bound, e.g. "400000"
+     * @param high The inclusive upper bound, e.g. "499999"
+     * @return The covering prefixes, e.g. ["4"]
+     */
+    public static List<String> expandRange(String low, String high) {
+        if (low.length() != high.length() || low.length() > 18) {
+            throw new IllegalArgumentException("Range bounds must have the same length (at most 18 digits): "
+                + low + "-" + high);
+        }
+        int length = low.length();
+        long start = Long.parseLong(low);
+        long end = Long.parseLong(high);
+        if (start > end) {
+            throw new IllegalArgumentException("Range start is after range end: " + low + "-" + high);
+        }
+
+        List<String> prefixes = new ArrayList<>();
+        while (start <= end) {
+            // Grow the block while start is aligned to it and it still fits in the range
+            int zeros = 0;
+            long blockSize = 1;
+            while (zeros < length && start % (blockSize * 10) == 0 && start + blockSize * 10 - 1 <= end) {
+                blockSize *= 10;
+                zeros++;
+            }
+            String padded = String.format("%0" + length + "d", start);
+            prefixes.add(padded.substring(0, length - zeros));
+            start += blockSize;
+        }
+        return prefixes;
+    }
+
+    /**
+     * Builder collecting prefixes before packing them into the trie
+     */
+    public static class Builder {
+        private final List<String> prefixes = new ArrayList<>();
+        private final List<Integer> prefixRoutes = new ArrayList<>();
+        private final List<Route> routes = new ArrayList<>();
+        private Route defaultRoute;
+        private Route invalidRoute;
+        private boolean luhnCheck;
+
+        /**
+         * Add a route for a prefix or a range of prefixes
+         * @param range Either a prefix ("4") or an inclusive range of equal-length bounds ("510000-559999")
+         * @param route The route to use for card numbers in the range
+         * @return This builder
+         */
+        public Builder add(String range, Route route) {
+            int routeIndex = routes.size();
+            routes.add(route);
+
+            int separator = range.indexOf('-');
+            List<String> expanded = separator < 0
+                ? Collections.singletonList(range)
+                : expandRange(range.substring(0, separator), range.substring(separator + 1));
+            for (String prefix : expanded) {
+                if (prefix.isEmpty() || prefix.length() > CARD_NUMBER_LENGTH || !prefix.chars().allMatch(Character::isDigit)) {
+                    throw new IllegalArgumentException("Invalid BIN prefix: " + prefix);
+                }
+                prefixes.add(prefix);
+                prefixRoutes.add(routeIndex);
+            }
+            return this;
+        }
+
+        public Builder defaultRoute(Route route) {
+            this.defaultRoute = route;
+            return this;
+        }
+
+        public Builder invalidRoute(Route route) {
+            this.invalidRoute = route;
+            return this;
+        }
+
+        public Builder luhnCheck(boolean luhnCheck) {
+            this.luhnCheck = luhnCheck;
+            return this;
+        }
+
+        public BinRoutingTable build() {
+            if (defaultRoute == null || invalidRoute == null) {
+                throw new IllegalStateException("Default and invalid routes are required");
+            }
+
+            // Node 0 is the "no child" marker and node 1 the root
+            int maxNodes = 2 + prefixes.stream().mapToInt(String::length).sum();
+            int[] children = new int[maxNodes * 10];
+            int[] nodeRoutes = new int[maxNodes];
+            Arrays.fill(nodeRoutes, NO_ROUTE);
+            int nodeCount = 2;
+
+            for (int p = 0; p < prefixes.size(); p++) {
+                String prefix = prefixes.get(p);
+                int node = 1;
+                for (int i = 0; i < prefix.length(); i++) {
+                    int slot = node * 10 + prefix.charAt(i) - '0';
+                    if (children[slot] == NO_NODE) {
+                        children[slot] = nodeCount++;
+                    }
+                    node = children[slot];
+                }
+                if (nodeRoutes[node] != NO_ROUTE) {
+                    throw new IllegalArgumentException("BIN prefix configured twice: " + prefix);
+                }
+                nodeRoutes[node] = prefixRoutes.get(p);
+            }
+
+            return new BinRoutingTable(
+                Arrays.copyOf(children, nodeCount * 10),
+                Arrays.copyOf(nodeRoutes, nodeCount),
+                Collections.unmodifiableList(new ArrayList<>(routes)),
+                defaultRoute,
+                invalidRoute,
+                luhnCheck
+            );
+        }
+    }
+}
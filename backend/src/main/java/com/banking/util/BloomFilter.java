@@ -0,0 +1,131 @@
+package com.banking.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size Bloom filter over character sequences such as card numbers.
+ *
+ * Sized from the expected number of entries and the target false-positive
+ * rate: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions. The k
+ * bit positions come from two 64-bit hashes (h1 + i * h2), computed without
+ * allocating. Bits are set with atomic ORs, so adds and lookups can run
+ * concurrently without locks. Entries cannot be removed.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedEntries;
+    private final LongAdder entries = new LongAdder();
+
+    /**
+     * @param expectedEntries The number of entries the false-positive rate is computed for
+     * @param falsePositiveRate The target false-positive rate, between 0 and 1
+     */
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        if (expectedEntries < 1) {
+            throw new IllegalArgumentException("Expected entries must be at least 1");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedEntries * Math.log(2)));
+        this.expectedEntries = expectedEntries;
+    }
+
+    /**
+     * Add an entry
+     * @param value The entry
+     */
+    public void put(CharSequence value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (current, set) -> current | set);
+            }
+        }
+        entries.increment();
+    }
+
+    /**
+     * Check whether an entry may have been added
+     * @param value The entry
+     * @return false if the entry was certainly never added
+     */
+    public boolean mightContain(CharSequence value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimate the current false-positive rate from the number of entries added
+     * @return (1 - e^(-k n / m))^k
+     */
+    public double estimatedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) entries.sum() / bitCount), hashCount);
+    }
+
+    /**
+     * Get the number of entries added, counting an entry added twice twice
+     * @return The entry count
+     */
+    public long getEntries() {
+        return entries.sum();
+    }
+
+    public long getExpectedEntries() {
+        return expectedEntries;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Get the memory taken by the bit array
+     * @return The size in bytes
+     */
+    public long getMemoryBytes() {
+        return bitCount / 8;
+    }
+
+    private static long hash(CharSequence value) {
+        // FNV-1a over the characters, then finalized so all bits depend on every digit
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,391 @@
+package com.banking.util;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.service.BinRoutingService;
+import com.banking.service.PinAttemptTracker;
+import com.banking.service.ProcessorClient;
+import com.banking.service.TransactionAdmissionExecutor;
+import com.banking.service.TransactionGatewayService;
+import com.banking.service.TransactionProcessorService;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Binary codec for the ISO 8583 subset spoken by terminals and switches.
+ *
+ * Every message is preceded by a 2-byte big-endian length that does not count
+ * itself. A message is the MTI as 2 BCD bytes, the 8-byte primary bitmap and
+ * the fields whose bits are set, in field order:
+ * <pre>
+ * DE2  PAN                 LLVAR n..19   1 BCD length byte, digits as BCD, right-justified (leading 0 pad)
+ * DE3  processing code     n6            3 BCD bytes: 00xxxx purchase and 01xxxx cash are withdrawals,
+ *                                        21xxxx deposit is a top-up
+ * DE4  amount              n12           6 BCD bytes, in minor units (cents)
+ * DE11 STAN                n6            3 BCD bytes, echoed in the response
+ * DE39 response code       an2           2 ASCII bytes, responses only
+ * DE52 PIN block           b64           ISO 9564 format 0 block, requests only
+ * DE54 balance             n12           6 BCD bytes in minor units, approved responses only
+ * </pre>
+ * A 0200 request must carry DE2, DE3, DE4, DE11 and DE52 and nothing else. The
+ * 0210 response echoes DE3, DE4 and DE11 and adds DE39 and, when approved,
+ * DE54. DE54 is a fixed numeric field here rather than the usual LLLVAR
+ * additional amounts. PIN blocks are taken in the clear; on a real network
+ * they arrive encrypted and are translated to this form by the HSM.
+ *
+ * Fields are decoded straight from the buffer, which may be direct, into the
+ * request: the only strings created are the card number and the PIN.
+ */
+public final class Iso8583Codec {
+
+    public static final int LENGTH_HEADER_BYTES = 2;
+
+    public static final int MAX_MESSAGE_BYTES = 512;
+
+    public static final int MTI_REQUEST = 200;
+    public static final int MTI_RESPONSE = 210;
+
+    public static final String APPROVED = "00";
+    public static final String FORMAT_ERROR = "30";
+    public static final String SYSTEM_MALFUNCTION = "96";
+
+    private static final int FIELD_PAN = 2;
+    private static final int FIELD_PROCESSING_CODE = 3;
+    private static final int FIELD_AMOUNT = 4;
+    private static final int FIELD_STAN = 11;
+    private static final int FIELD_RESPONSE_CODE = 39;
+    private static final int FIELD_PIN_BLOCK = 52;
+    private static final int FIELD_BALANCE = 54;
+
+    private static final long REQUEST_FIELDS = bit(FIELD_PAN) | bit(FIELD_PROCESSING_CODE) | bit(FIELD_AMOUNT)
+        | bit(FIELD_STAN) | bit(FIELD_PIN_BLOCK);
+
+    private static final int MAX_PAN_DIGITS = 19;
+
+    private static final String WITHDRAW = "withdraw";
+    private static final String TOPUP = "topup";
+
+    /** Decline messages of the gateway and processor mapped to ISO response codes */
+    private static final Map<String, String> RESPONSE_CODES = Map.of(
+        TransactionProcessorService.INVALID_CARD_MESSAGE, "14",
+        BinRoutingService.INVALID_REASON, "14",
+        TransactionProcessorService.INVALID_PIN_MESSAGE, "55",
+        PinAttemptTracker.LOCKED_MESSAGE, "75",
+        TransactionProcessorService.INSUFFICIENT_BALANCE_MESSAGE, "51",
+        TransactionGatewayService.INVALID_AMOUNT_MESSAGE, "13",
+        TransactionProcessorService.INVALID_TYPE_MESSAGE, "12",
+        TransactionAdmissionExecutor.BUSY_MESSAGE, "91",
+        ProcessorClient.OUTCOME_UNKNOWN, "68"
+    );
+
+    /** Any other decline, such as a BIN range that is not supported */
+    private static final String DO_NOT_HONOUR = "05";
+
+    private Iso8583Codec() {}
+
+    /**
+     * Decode a 0200 request. The buffer holds exactly one message without its
+     * length header; its position is advanced past it.
+     * @param buffer The message
+     * @return The decoded request, or a request carrying the reason it is malformed
+     */
+    public static Request decodeRequest(ByteBuffer buffer) {
+        Request decoded = new Request();
+        try {
+            int mti = (int) readBcd(buffer, 2);
+            long bitmap = buffer.getLong();
+            if (mti != MTI_REQUEST) {
+                return decoded.reject(String.format("Unsupported MTI %04d", mti));
+            }
+            if (bitmap != REQUEST_FIELDS) {
+                return decoded.reject("Request must carry exactly fields 2, 3, 4, 11 and 52");
+            }
+
+            int panDigits = (int) readBcd(buffer, 1);
+            if (panDigits < 1 || panDigits > MAX_PAN_DIGITS) {
+                return decoded.reject("Invalid PAN length " + panDigits);
+            }
+            char[] pan = readDigits(buffer, panDigits);
+            decoded.processingCode = (int) readBcd(buffer, 3);
+            decoded.amountMinor = readBcd(buffer, 6);
+            decoded.stan = (int) readBcd(buffer, 3);
+            char[] pin = readPinBlock(buffer, pan);
+            if (buffer.hasRemaining()) {
+                return decoded.reject("Unexpected data after the last field");
+            }
+
+            decoded.transactionRequest = new TransactionRequest(new String(pan), new String(pin),
+                BigDecimal.valueOf(decoded.amountMinor, 2), transactionType(decoded.processingCode));
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            return decoded.reject(e.getMessage());
+        } catch (BufferUnderflowException e) {
+            return decoded.reject("Message truncated");
+        }
+    }
+
+    /**
+     * Encode the 0210 response to a request, with its length header
+     * @param buffer The buffer to write to
+     * @param request The decoded request
+     * @param response The transaction response, or null when the request was malformed or processing failed
+     */
+    public static void encodeResponse(ByteBuffer buffer, Request request, TransactionResponse response) {
+        String responseCode = request.formatError != null ? FORMAT_ERROR
+            : response == null ? SYSTEM_MALFUNCTION : responseCode(response);
+        boolean approved = APPROVED.equals(responseCode) && response.getBalanceAfter() != null;
+
+        int lengthPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int start = buffer.position();
+        writeBcd(buffer, MTI_RESPONSE, 2);
+
+        long bitmap = bit(FIELD_RESPONSE_CODE);
+        if (request.stan >= 0) {
+            bitmap |= bit(FIELD_STAN);
+        }
+        if (request.processingCode >= 0) {
+            bitmap |= bit(FIELD_PROCESSING_CODE);
+        }
+        if (request.amountMinor >= 0) {
+            bitmap |= bit(FIELD_AMOUNT);
+        }
+        if (approved) {
+            bitmap |= bit(FIELD_BALANCE);
+        }
+        buffer.putLong(bitmap);
+
+        if (request.processingCode >= 0) {
+            writeBcd(buffer, request.processingCode, 3);
+        }
+        if (request.amountMinor >= 0) {
+            writeBcd(buffer, request.amountMinor, 6);
+        }
+        if (request.stan >= 0) {
+            writeBcd(buffer, request.stan, 3);
+        }
+        buffer.put((byte) responseCode.charAt(0));
+        buffer.put((byte) responseCode.charAt(1));
+        if (approved) {
+            writeBcd(buffer, response.getBalanceAfter().movePointRight(2).longValueExact(), 6);
+        }
+        buffer.putShort(lengthPosition, (short) (buffer.position() - start));
+    }
+
+    /**
+     * Map a transaction response to its ISO response code
+     * @param response The transaction response
+     * @return The two-character response code
+     */
+    public static String responseCode(TransactionResponse response) {
+        if (response.isSuccess()) {
+            return APPROVED;
+        }
+        return RESPONSE_CODES.getOrDefault(response.getMessage(), DO_NOT_HONOUR);
+    }
+
+    /**
+     * Encode a 0200 request, with its length header, as a terminal would
+     * @param buffer The buffer to write to
+     * @param cardNumber The PAN
+     * @param pin The clear PIN, 4 to 12 digits
+     * @param processingCode The 6-digit processing code
+     * @param amountMinor The amount in minor units
+     * @param stan The system trace audit number
+     */
+    public static void encodeRequest(ByteBuffer buffer, String cardNumber, String pin, int processingCode,
+                                     long amountMinor, int stan) {
+        int lengthPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int start = buffer.position();
+        writeBcd(buffer, MTI_REQUEST, 2);
+        buffer.putLong(REQUEST_FIELDS);
+
+        writeBcd(buffer, cardNumber.length(), 1);
+        if (cardNumber.length() % 2 != 0) {
+            buffer.put((byte) digit(cardNumber, 0));
+        }
+        for (int i = cardNumber.length() % 2; i < cardNumber.length(); i += 2) {
+            buffer.put((byte) (digit(cardNumber, i) << 4 | digit(cardNumber, i + 1)));
+        }
+        writeBcd(buffer, processingCode, 3);
+        writeBcd(buffer, amountMinor, 6);
+        writeBcd(buffer, stan, 3);
+
+        long pinField = (long) pin.length() << 56;
+        for (int i = 0; i < 14; i++) {
+            long nibble = i < pin.length() ? digit(pin, i) : 0xF;
+            pinField |= nibble << (52 - 4 * i);
+        }
+        buffer.putLong(pinField ^ panField(cardNumber.toCharArray()));
+        buffer.putShort(lengthPosition, (short) (buffer.position() - start));
+    }
+
+    /**
+     * Read the response code of a 0210 response, as a terminal would
+     * @param buffer The message without its length header
+     * @return The response code, or null when the message carries none
+     */
+    public static String readResponseCode(ByteBuffer buffer) {
+        readBcd(buffer, 2);
+        long bitmap = buffer.getLong();
+        if ((bitmap & bit(FIELD_RESPONSE_CODE)) == 0) {
+            return null;
+        }
+        if ((bitmap & bit(FIELD_PROCESSING_CODE)) != 0) {
+            skip(buffer, 3);
+        }
+        if ((bitmap & bit(FIELD_AMOUNT)) != 0) {
+            skip(buffer, 6);
+        }
+        if ((bitmap & bit(FIELD_STAN)) != 0) {
+            skip(buffer, 3);
+        }
+        return new String(new char[] {(char) buffer.get(), (char) buffer.get()});
+    }
+
+    private static String transactionType(int processingCode) {
+        switch (processingCode / 10000) {
+            case 0:
+            case 1:
+                return WITHDRAW;
+            case 21:
+                return TOPUP;
+            default:
+                // Declined by the gateway as an invalid transaction type
+                return null;
+        }
+    }
+
+    private static char[] readDigits(ByteBuffer buffer, int count) {
+        char[] digits = new char[count];
+        int i = 0;
+        if (count % 2 != 0) {
+            int pad = buffer.get();
+            if ((pad & 0xF0) != 0) {
+                throw new IllegalArgumentException("Invalid PAN padding");
+            }
+            digits[i++] = toChar(pad & 0x0F);
+        }
+        while (i < count) {
+            int pair = buffer.get();
+            digits[i++] = toChar(pair >>> 4 & 0x0F);
+            digits[i++] = toChar(pair & 0x0F);
+        }
+        return digits;
+    }
+
+    /**
+     * Recover the PIN from an ISO 9564 format 0 block: the PIN field
+     * (0, length, digits, F padding) XORed with 0000 and the 12 rightmost PAN
+     * digits before the check digit
+     */
+    private static char[] readPinBlock(ByteBuffer buffer, char[] pan) {
+        long pinField = buffer.getLong() ^ panField(pan);
+        int format = (int) (pinField >>> 60);
+        int length = (int) (pinField >>> 56 & 0x0F);
+        if (format != 0 || length < 4 || length > 12) {
+            throw new IllegalArgumentException("Invalid PIN block");
+        }
+        char[] pin = new char[length];
+        for (int i = 0; i < 14; i++) {
+            int nibble = (int) (pinField >>> (52 - 4 * i) & 0x0F);
+            if (i < length) {
+                pin[i] = toChar(nibble);
+            } else if (nibble != 0x0F) {
+                throw new IllegalArgumentException("Invalid PIN block");
+            }
+        }
+        return pin;
+    }
+
+    private static long panField(char[] pan) {
+        long field = 0;
+        int end = pan.length - 1;
+        for (int i = Math.max(0, end - 12); i < end; i++) {
+            field = field << 4 | (pan[i] - '0');
+        }
+        return field;
+    }
+
+    private static long readBcd(ByteBuffer buffer, int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int pair = buffer.get();
+            value = value * 100 + digitValue(pair >>> 4 & 0x0F) * 10 + digitValue(pair & 0x0F);
+        }
+        return value;
+    }
+
+    private static void writeBcd(ByteBuffer buffer, long value, int bytes) {
+        int start = buffer.position();
+        long remaining = value;
+        for (int i = bytes - 1; i >= 0; i--) {
+            buffer.put(start + i, (byte) (remaining / 10 % 10 << 4 | remaining % 10));
+            remaining /= 100;
+        }
+        if (remaining != 0 || value < 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + bytes * 2 + " digits");
+        }
+        buffer.position(start + bytes);
+    }
+
+    private static int digitValue(int nibble) {
+        if (nibble > 9) {
+            throw new IllegalArgumentException("Invalid BCD digit");
+        }
+        return nibble;
+    }
+
+    private static char toChar(int nibble) {
+        return (char) ('0' + digitValue(nibble));
+    }
+
+    private static int digit(String digits, int index) {
+        char c = digits.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Not a digit: " + c);
+        }
+        return c - '0';
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    private static long bit(int field) {
+        return 1L << (64 - field);
+    }
+
+    /**
+     * A decoded 0200 request and the fields echoed in its response
+     */
+    public static class Request {
+        private int processingCode = -1;
+        private long amountMinor = -1;
+        private int stan = -1;
+        private TransactionRequest transactionRequest;
+        private String formatError;
+
+        private Request reject(String reason) {
+            formatError = reason;
+            transactionRequest = null;
+            return this;
+        }
+
+        public TransactionRequest getTransactionRequest() {
+            return transactionRequest;
+        }
+
+        public String getFormatError() {
+            return formatError;
+        }
+
+        public int getStan() {
+            return stan;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.banking.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the cards created while the ledger is enabled.
+ *
+ * The journal and the snapshots only hold balances, so a card that exists
+ * nowhere but in the in-memory database, such as one from a bulk import, could
+ * not be restored after a restart. Each record holds the packed card number,
+ * the opening balance in cents, the PIN hash and a CRC32 in a fixed 56-byte
+ * slot. Appends are buffered until force(). Replay stops at the first torn
+ * record, and open() cuts such a tail off before appending.
+ */
+public class LedgerCardLog implements Closeable {
+
+    public static final int RECORD_SIZE = 56;
+
+    private static final String FILE_NAME = "cards.log";
+    private static final int CHECKED_SIZE = 16 + PinHasher.HASH_LENGTH;
+    private static final int BUFFERED_RECORDS = 1024;
+
+    /**
+     * Receives logged cards in the order they were created
+     */
+    public interface CardConsumer {
+        void accept(long cardKey, long cents, byte[] pinHash);
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * BUFFERED_RECORDS);
+    private final CRC32 crc = new CRC32();
+
+    private LedgerCardLog(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Open the card log for appending, dropping a torn record left by a crash
+     * @param directory The ledger directory
+     * @return The card log
+     * @throws IOException If the log cannot be opened
+     */
+    public static LedgerCardLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_NAME);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = scan(channel, (cardKey, cents, pinHash) -> { });
+        channel.truncate(valid);
+        channel.position(valid);
+        return new LedgerCardLog(file, channel);
+    }
+
+    /**
+     * Append a created card; it is durable only after a later force()
+     * @param cardKey The packed card number
+     * @param cents The opening balance in cents
+     * @param pinHash The PIN hash of the card
+     */
+    public synchronized void append(long cardKey, long cents, byte[] pinHash) {
+        if (pinHash.length != PinHasher.HASH_LENGTH) {
+            throw new IllegalArgumentException("PIN hash must have " + PinHasher.HASH_LENGTH + " bytes");
+        }
+        if (!buffer.hasRemaining()) {
+            write();
+        }
+        int start = buffer.position();
+        buffer.putLong(cardKey);
+        buffer.putLong(cents);
+        buffer.put(pinHash);
+        crc.reset();
+        crc.update(buffer.array(), start, CHECKED_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    /**
+     * Write every appended card and sync the log to disk
+     */
+    public synchronized void force() {
+        write();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync the ledger card log", e);
+        }
+    }
+
+    /**
+     * Replay every card written to the log so far
+     * @param consumer Receives each card
+     * @return The number of cards replayed
+     * @throws IOException If the log cannot be read
+     */
+    public long replay(CardConsumer consumer) throws IOException {
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            return scan(reader, consumer) / RECORD_SIZE;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void write() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the ledger card log", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    // Returns the length of the valid records at the start of the file
+    private static long scan(FileChannel channel, CardConsumer consumer) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * BUFFERED_RECORDS);
+        CRC32 crc = new CRC32();
+        long size = channel.size();
+        long valid = 0;
+        while (valid + RECORD_SIZE <= size) {
+            records.clear();
+            long position = valid;
+            while (records.hasRemaining() && position + records.position() < size) {
+                if (channel.read(records, position + records.position()) < 0) {
+                    break;
+                }
+            }
+            records.flip();
+            while (records.remaining() >= RECORD_SIZE) {
+                int start = records.position();
+                crc.reset();
+                crc.update(records.array(), start, CHECKED_SIZE);
+                if (records.getInt(start + CHECKED_SIZE) != (int) crc.getValue()) {
+                    return valid;
+                }
+                long cardKey = records.getLong();
+                long cents = records.getLong();
+                byte[] pinHash = new byte[PinHasher.HASH_LENGTH];
+                records.get(pinHash);
+                records.position(start + RECORD_SIZE);
+                consumer.accept(cardKey, cents, pinHash);
+                valid += RECORD_SIZE;
+            }
+            if (valid == position) {
+                break;
+            }
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,255 @@
+package com.banking.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of card balances in memory-mapped segment files.
+ *
+ * Every record holds a sequence number, the card number packed into a long,
+ * the new balance in cents and a CRC32, in a fixed 32-byte slot. Appends only
+ * write into the mapped segment; force() makes everything appended so far
+ * durable, so callers can group many appends behind one fsync. Replay stops
+ * at the first torn or out-of-sequence record.
+ */
+public class LedgerJournal implements Closeable {
+
+    public static final int RECORD_SIZE = 32;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Receives journal records in sequence order
+     */
+    public interface RecordConsumer {
+        void accept(long sequence, long cardKey, long cents);
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer checksumScratch = ByteBuffer.allocate(24);
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    private long nextSequence;
+    private volatile long appendedSequence;
+
+    private LedgerJournal(Path directory, int segmentBytes, long firstSequence) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_SIZE;
+        this.nextSequence = firstSequence;
+        this.appendedSequence = firstSequence - 1;
+    }
+
+    /**
+     * Open the journal for appending, starting a new segment. Segments starting at or
+     * after firstSequence could not be replayed and are deleted.
+     * @param directory The journal directory
+     * @param firstSequence The sequence number of the next record, one past the last replayed record
+     * @param segmentBytes The size of each segment file
+     * @return The journal
+     * @throws IOException If the segment cannot be created
+     */
+    public static LedgerJournal open(Path directory, long firstSequence, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        for (Path file : listSegments(directory)) {
+            if (segmentStart(file) >= firstSequence) {
+                Files.delete(file);
+            }
+        }
+        LedgerJournal journal = new LedgerJournal(directory, segmentBytes, firstSequence);
+        journal.startSegment();
+        return journal;
+    }
+
+    /**
+     * Append a balance record; it is durable only after a later force()
+     * @param cardKey The packed card number
+     * @param cents The new balance in cents
+     * @return The sequence number of the record
+     */
+    public synchronized long append(long cardKey, long cents) {
+        if (position + RECORD_SIZE > segmentBytes) {
+            try {
+                segment.force();
+                channel.close();
+                startSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to roll over ledger journal segment", e);
+            }
+        }
+
+        long sequence = nextSequence++;
+        segment.putLong(position, sequence);
+        segment.putLong(position + 8, cardKey);
+        segment.putLong(position + 16, cents);
+        segment.putInt(position + 24, checksum(checksumScratch, crc, sequence, cardKey, cents));
+        position += RECORD_SIZE;
+        appendedSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Flush every record appended so far to disk
+     * @return The sequence number of the last durable record
+     */
+    public long force() {
+        MappedByteBuffer target;
+        long upTo;
+        synchronized (this) {
+            target = segment;
+            upTo = appendedSequence;
+        }
+        // Earlier segments were forced when they were rolled over
+        target.force();
+        return upTo;
+    }
+
+    /**
+     * Get the sequence number of the last appended record
+     * @return The last appended sequence, durable or not
+     */
+    public long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segment.force();
+        channel.close();
+    }
+
+    /**
+     * Replay the journal records that follow a sequence number
+     * @param directory The journal directory
+     * @param afterSequence Records up to and including this sequence are skipped
+     * @param consumer Receives the replayed records
+     * @return The sequence number of the last valid record, or afterSequence if there is none after it
+     * @throws IOException If a segment cannot be read
+     */
+    public static long replay(Path directory, long afterSequence, RecordConsumer consumer) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer scratch = ByteBuffer.allocate(24);
+        long last = -1;
+
+        for (Path file : listSegments(directory)) {
+            long firstInSegment = segmentStart(file);
+            // A later segment must continue right after the previous one
+            if (last >= 0 && firstInSegment != last + 1) {
+                break;
+            }
+
+            try (FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+                int limit = buffer.capacity() - buffer.capacity() % RECORD_SIZE;
+                for (int offset = 0; offset < limit; offset += RECORD_SIZE) {
+                    long sequence = buffer.getLong(offset);
+                    long cardKey = buffer.getLong(offset + 8);
+                    long cents = buffer.getLong(offset + 16);
+                    int stored = buffer.getInt(offset + 24);
+                    long expected = last >= 0 ? last + 1 : firstInSegment;
+                    // Unwritten tail or torn write: continue with the next segment
+                    if (sequence != expected || stored != checksum(scratch, crc, sequence, cardKey, cents)) {
+                        break;
+                    }
+                    if (sequence > afterSequence) {
+                        consumer.accept(sequence, cardKey, cents);
+                    }
+                    last = sequence;
+                }
+            }
+        }
+        return Math.max(last, afterSequence);
+    }
+
+    /**
+     * Delete segments that only hold records covered by a snapshot
+     * @param directory The journal directory
+     * @param sequence The snapshot sequence number
+     * @throws IOException If a segment cannot be deleted
+     */
+    public static void deleteSegmentsBefore(Path directory, long sequence) throws IOException {
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (segmentStart(segments.get(i + 1)) <= sequence + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Pack a 16-digit card number into a long
+     * @param cardNumber The card number
+     * @return The packed card number
+     */
+    public static long toCardKey(String cardNumber) {
+        if (cardNumber.length() != BinRoutingTable.CARD_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("Card number must have " + BinRoutingTable.CARD_NUMBER_LENGTH + " digits");
+        }
+        return Long.parseLong(cardNumber);
+    }
+
+    /**
+     * Unpack a card number packed by toCardKey
+     * @param cardKey The packed card number
+     * @return The 16-digit card number
+     */
+    public static String toCardNumber(long cardKey) {
+        char[] digits = new char[BinRoutingTable.CARD_NUMBER_LENGTH];
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + cardKey % 10);
+            cardKey /= 10;
+        }
+        return new String(digits);
+    }
+
+    private void startSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        position = 0;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentStart(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(ByteBuffer scratch, CRC32 crc, long sequence, long cardKey, long cents) {
+        scratch.clear();
+        scratch.putLong(sequence).putLong(cardKey).putLong(cents).flip();
+        crc.reset();
+        crc.update(scratch);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,176 @@
+package com.banking.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Point-in-time snapshot of every card balance, tagged with the journal sequence it covers.
+ *
+ * The file holds a header, one (card key, cents) pair per card and a trailer
+ * with the entry count and a CRC32 over the entries. Snapshots are written to
+ * a temporary file, synced and atomically renamed, and the newest snapshot
+ * that validates is the one loaded.
+ */
+public final class LedgerSnapshot {
+
+    private static final int MAGIC = 0x424c534e;
+    private static final int VERSION = 1;
+    private static final long END_MARKER = -1L;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final int TRAILER_SIZE = 24;
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    /**
+     * Accepts the balances written into a snapshot
+     */
+    public interface EntryWriter {
+        void write(long cardKey, long cents) throws IOException;
+    }
+
+    /**
+     * Produces the balances of a snapshot
+     */
+    public interface Source {
+        void writeTo(EntryWriter writer) throws IOException;
+    }
+
+    private LedgerSnapshot() {
+    }
+
+    /**
+     * Write a snapshot and delete all but the most recent ones
+     * @param directory The ledger directory
+     * @param sequence The last journal sequence reflected in the balances
+     * @param source Writes every card balance
+     * @return The snapshot file
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static Path write(Path directory, long sequence, Source source) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+
+            CRC32 crc = new CRC32();
+            byte[] entry = new byte[ENTRY_SIZE];
+            long[] count = new long[1];
+            source.writeTo((cardKey, cents) -> {
+                putLong(entry, 0, cardKey);
+                putLong(entry, 8, cents);
+                crc.update(entry);
+                out.write(entry);
+                count[0]++;
+            });
+
+            out.writeLong(END_MARKER);
+            out.writeLong(count[0]);
+            out.writeLong(crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        List<Path> snapshots = listSnapshots(directory);
+        for (int i = SNAPSHOTS_KEPT; i < snapshots.size(); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return target;
+    }
+
+    /**
+     * Load the newest valid snapshot into a state
+     * @param directory The ledger directory
+     * @param state Receives the balances; cleared if no snapshot validates
+     * @return The sequence the loaded snapshot covers, or 0 if there is none
+     * @throws IOException If the directory cannot be listed
+     */
+    public static long loadLatest(Path directory, LedgerState state) throws IOException {
+        for (Path snapshot : listSnapshots(directory)) {
+            try {
+                return load(snapshot, state);
+            } catch (IOException e) {
+                // Corrupt or truncated; fall back to the previous snapshot
+                state.clear();
+            }
+        }
+        return 0;
+    }
+
+    private static long load(Path snapshot, LedgerState state) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long entriesSize = size - HEADER_SIZE - TRAILER_SIZE;
+            if (entriesSize < 0 || entriesSize % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException("Truncated ledger snapshot: " + snapshot);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a ledger snapshot: " + snapshot);
+            }
+            long sequence = buffer.getLong(8);
+
+            // Validate the whole file before touching the state
+            int trailer = (int) (HEADER_SIZE + entriesSize);
+            long count = entriesSize / ENTRY_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_SIZE).limit(trailer));
+            if (buffer.getLong(trailer) != END_MARKER || buffer.getLong(trailer + 8) != count
+                    || buffer.getLong(trailer + 16) != crc.getValue()) {
+                throw new IOException("Ledger snapshot checksum mismatch: " + snapshot);
+            }
+
+            state.reserve((int) count);
+            for (int offset = HEADER_SIZE; offset < trailer; offset += ENTRY_SIZE) {
+                state.put(buffer.getLong(offset), buffer.getLong(offset + 8));
+            }
+            return sequence;
+        }
+    }
+
+    // Newest first
+    private static List<Path> listSnapshots(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                })
+                .sorted(Collections.reverseOrder())
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
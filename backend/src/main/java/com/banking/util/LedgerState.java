@@ -0,0 +1,148 @@
+package com.banking.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Card balances recovered from the ledger, keyed by packed card number.
+ *
+ * Open-addressing map of primitive longs, so ten million cards take two flat
+ * arrays instead of ten million boxed entries.
+ */
+public class LedgerState {
+
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * Receives every card balance
+     */
+    public interface EntryConsumer {
+        void accept(long cardKey, long cents);
+    }
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private long sequence;
+
+    public LedgerState() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Load the latest snapshot and replay the journal tail after it
+     * @param directory The ledger directory
+     * @return The recovered balances
+     * @throws IOException If the ledger cannot be read
+     */
+    public static LedgerState recover(Path directory) throws IOException {
+        LedgerState state = new LedgerState();
+        long snapshotSequence = LedgerSnapshot.loadLatest(directory, state);
+        state.sequence = LedgerJournal.replay(directory, snapshotSequence,
+            (sequence, cardKey, cents) -> state.put(cardKey, cents));
+        return state;
+    }
+
+    /**
+     * Grow the table up front so that it holds the given number of entries without rehashing
+     * @param entries The expected number of entries
+     */
+    public void reserve(int entries) {
+        int capacity = keys.length;
+        while (entries >= capacity - (capacity >> 2)) {
+            capacity <<= 1;
+        }
+        if (capacity != keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    public void put(long cardKey, long cents) {
+        if (size >= keys.length - (keys.length >> 2)) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = hash(cardKey) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != cardKey) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = cardKey;
+            size++;
+        }
+        values[slot] = cents;
+    }
+
+    /**
+     * Get the balance of a card
+     * @param cardKey The packed card number
+     * @param missing The value to return when the card is unknown
+     * @return The balance in cents, or missing
+     */
+    public long get(long cardKey, long missing) {
+        int mask = keys.length - 1;
+        int slot = hash(cardKey) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == cardKey) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        sequence = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the sequence number of the last record reflected in the balances
+     * @return The last recovered sequence, 0 for an empty ledger
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    private void grow() {
+        rehash(keys.length << 1);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,52 +1,87 @@
 package com.banking.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 public class PinHasher {
-    
+
     private static final String HASH_ALGORITHM = "SHA-256";
-    
+
+    /**
+     * Length in bytes of a stored PIN hash
+     */
+    public static final int HASH_LENGTH = 32;
+
+    private static final int MAX_ASCII_PIN_LENGTH = 16;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Digest and scratch buffers reused by every verification on the same thread
+    private static final ThreadLocal<HashState> HASH_STATE = ThreadLocal.withInitial(HashState::new);
+
     /**
      * Hash a PIN using SHA-256
      * @param pin The plain text PIN to hash
-     * @return The hashed PIN as a hexadecimal string
+     * @return The raw 32-byte hash
      */
-    public static String hashPin(String pin) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
-            byte[] hash = digest.digest(pin.getBytes());
-            return bytesToHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not available", e);
-        }
+    public static byte[] hashPin(String pin) {
+        HashState state = HASH_STATE.get();
+        byte[] hash = new byte[HASH_LENGTH];
+        System.arraycopy(state.digest(pin), 0, hash, 0, HASH_LENGTH);
+        return hash;
     }
-    
+
     /**
-     * Verify a PIN by comparing the hashed input with the stored hash
+     * Verify a PIN by comparing the hashed input with the stored hash in constant time
      * @param inputPin The plain text PIN to verify
-     * @param storedHash The stored hash to compare against
+     * @param storedHash The stored raw hash to compare against
      * @return true if the PIN matches, false otherwise
      */
-    public static boolean verifyPin(String inputPin, String storedHash) {
-        String inputHash = hashPin(inputPin);
-        return inputHash.equals(storedHash);
+    public static boolean verifyPin(String inputPin, byte[] storedHash) {
+        if (inputPin == null || storedHash == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(HASH_STATE.get().digest(inputPin), storedHash);
     }
-    
+
     /**
      * Convert byte array to hexadecimal string
      * @param bytes The byte array to convert
      * @return The hexadecimal string representation
      */
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
         }
-        return result.toString();
+        return new String(hex);
     }
-    
+
+    /**
+     * Convert a hexadecimal string, such as a legacy stored PIN hash, to bytes
+     * @param hex The hexadecimal string to convert
+     * @return The decoded bytes
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex string must have an even length");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex character in: " + hex);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
     /**
      * Generate a random salt for additional security (if needed in future)
      * @return A random salt string
@@ -55,6 +90,52 @@ public class PinHasher {
         SecureRandom random = new SecureRandom();
         byte[] salt = new byte[16];
         random.nextBytes(salt);
-        return bytesToHex(salt);
+        return toHex(salt);
+    }
+
+    /**
+     * Per-thread digest with reusable input and output buffers
+     */
+    private static class HashState {
+        private final MessageDigest digest;
+        private final byte[] input = new byte[MAX_ASCII_PIN_LENGTH];
+        private final byte[] output = new byte[HASH_LENGTH];
+
+        HashState() {
+            try {
+                digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("SHA-256 algorithm not available", e);
+            }
+        }
+
+        /**
+         * Hash a PIN into the shared output buffer, valid until the next call on this thread
+         */
+        byte[] digest(String pin) {
+            int length = pin.length();
+            if (length <= MAX_ASCII_PIN_LENGTH && encodeAscii(pin, length)) {
+                digest.update(input, 0, length);
+            } else {
+                digest.update(pin.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                digest.digest(output, 0, HASH_LENGTH);
+            } catch (DigestException e) {
+                throw new IllegalStateException("SHA-256 digest failed", e);
+            }
+            return output;
+        }
+
+        private boolean encodeAscii(String pin, int length) {
+            for (int i = 0; i < length; i++) {
+                char c = pin.charAt(i);
+                if (c > 0x7f) {
+                    return false;
+                }
+                input[i] = (byte) c;
+            }
+            return true;
+        }
     }
-} 
\ No newline at end of file
+}
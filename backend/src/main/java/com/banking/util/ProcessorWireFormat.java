@@ -0,0 +1,276 @@
+package com.banking.util;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.model.Transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of the gateway to processor link.
+ *
+ * A connection starts with the 4-byte MAGIC sent by the client. After that both
+ * sides exchange frames, all big-endian:
+ * <pre>
+ * frame    = length:int32 kind:int8 correlationId:int64 payload   (length counts kind onwards)
+ * REQUEST  = cardNumber:string count:int16 (pin:string amount:decimal type:string idempotencyKey:string){count}
+ * RESPONSE = count:int16 (flags:int8 message:string cardNumber:string transactionType:string
+ *            amount:decimal balanceAfter:decimal timestamp transactionId:string){count}
+ * REPLAYED = as RESPONSE
+ * ERROR    = message:string
+ * SUBSCRIBE = empty
+ * RECORDED = count:int16 (id:int64 cardNumber:string type:string status:string message:string
+ *            amount:decimal balanceAfter:decimal timestamp){count}
+ * string   = length:int16 (-1 for null) UTF-8 bytes
+ * decimal  = length:int8 (0 for null) unscaled two's complement bytes, scale:int8
+ * timestamp = epochSecond:int64 (Long.MIN_VALUE for null) nano:int32, as UTC
+ * </pre>
+ * A REQUEST carries one or more requests for the same card, which the processor
+ * applies in order; its RESPONSE has the same correlation id and one response
+ * per request. Responses may arrive in any order. A request whose idempotency
+ * key the processor has seen before is answered with REPLAYED, the responses of
+ * the first execution, whose balances may no longer be current.
+ *
+ * A client sends SUBSCRIBE, with correlation id 0, on one connection to a node
+ * to receive the audit records the node commits from then on as RECORDED
+ * frames, also with correlation id 0.
+ */
+public final class ProcessorWireFormat {
+
+    /** "BKP" and protocol version 2 */
+    public static final int MAGIC = 0x424B5002;
+
+    public static final byte REQUEST = 1;
+    public static final byte RESPONSE = 2;
+    public static final byte ERROR = 3;
+    public static final byte SUBSCRIBE = 4;
+    public static final byte RECORDED = 5;
+    public static final byte REPLAYED = 6;
+
+    /** Bytes of the frame header following the length: kind and correlation id */
+    public static final int HEADER_BYTES = 1 + 8;
+
+    public static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+
+    private static final byte SUCCESS_FLAG = 1;
+
+    private ProcessorWireFormat() {}
+
+    /**
+     * Write a request frame's payload
+     * @param buffer The buffer to write to
+     * @param cardNumber The card shared by all requests
+     * @param requests The requests in the order they must be applied
+     */
+    public static void writeRequests(ByteBuffer buffer, String cardNumber, List<TransactionRequest> requests) {
+        writeString(buffer, cardNumber);
+        buffer.putShort(toCount(requests.size()));
+        for (TransactionRequest request : requests) {
+            writeString(buffer, request.getPin());
+            writeDecimal(buffer, request.getAmount());
+            writeString(buffer, request.getType());
+            writeString(buffer, request.getIdempotencyKey());
+        }
+    }
+
+    /**
+     * Read a request frame's payload
+     * @param buffer The payload
+     * @return The requests, all for the same card
+     */
+    public static List<TransactionRequest> readRequests(ByteBuffer buffer) {
+        String cardNumber = readString(buffer);
+        int count = buffer.getShort() & 0xFFFF;
+        List<TransactionRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String pin = readString(buffer);
+            BigDecimal amount = readDecimal(buffer);
+            TransactionRequest request = new TransactionRequest(cardNumber, pin, amount, readString(buffer));
+            request.setIdempotencyKey(readString(buffer));
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * Write a response frame's payload
+     * @param buffer The buffer to write to
+     * @param responses The responses in request order
+     */
+    public static void writeResponses(ByteBuffer buffer, List<TransactionResponse> responses) {
+        buffer.putShort(toCount(responses.size()));
+        for (TransactionResponse response : responses) {
+            buffer.put(response.isSuccess() ? SUCCESS_FLAG : 0);
+            writeString(buffer, response.getMessage());
+            writeString(buffer, response.getCardNumber());
+            writeString(buffer, response.getTransactionType());
+            writeDecimal(buffer, response.getAmount());
+            writeDecimal(buffer, response.getBalanceAfter());
+            writeTimestamp(buffer, response.getTimestamp());
+            writeString(buffer, response.getTransactionId());
+        }
+    }
+
+    /**
+     * Read a response frame's payload
+     * @param buffer The payload
+     * @return The responses in request order
+     */
+    public static List<TransactionResponse> readResponses(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        List<TransactionResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TransactionResponse response = new TransactionResponse();
+            response.setSuccess((buffer.get() & SUCCESS_FLAG) != 0);
+            response.setMessage(readString(buffer));
+            response.setCardNumber(readString(buffer));
+            response.setTransactionType(readString(buffer));
+            response.setAmount(readDecimal(buffer));
+            response.setBalanceAfter(readDecimal(buffer));
+            response.setTimestamp(readTimestamp(buffer));
+            response.setTransactionId(readString(buffer));
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    /**
+     * Write a recorded frame's payload
+     * @param buffer The buffer to write to
+     * @param transactions The committed audit records
+     */
+    public static void writeTransactions(ByteBuffer buffer, List<Transaction> transactions) {
+        buffer.putShort(toCount(transactions.size()));
+        for (Transaction transaction : transactions) {
+            buffer.putLong(transaction.getId());
+            writeString(buffer, transaction.getCardNumber());
+            writeString(buffer, transaction.getType().name());
+            writeString(buffer, transaction.getStatus().name());
+            writeString(buffer, transaction.getMessage());
+            writeDecimal(buffer, transaction.getAmount());
+            writeDecimal(buffer, transaction.getBalanceAfter());
+            writeTimestamp(buffer, transaction.getTimestamp());
+        }
+    }
+
+    /**
+     * Read a recorded frame's payload
+     * @param buffer The payload
+     * @return The committed audit records, detached
+     */
+    public static List<Transaction> readTransactions(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setId(buffer.getLong());
+            transaction.setCardNumber(readString(buffer));
+            transaction.setType(Transaction.TransactionType.valueOf(readString(buffer)));
+            transaction.setStatus(Transaction.TransactionStatus.valueOf(readString(buffer)));
+            transaction.setMessage(readString(buffer));
+            transaction.setAmount(readDecimal(buffer));
+            transaction.setBalanceAfter(readDecimal(buffer));
+            transaction.setTimestamp(readTimestamp(buffer));
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * Write an error frame's payload
+     * @param buffer The buffer to write to
+     * @param message The error message
+     */
+    public static void writeError(ByteBuffer buffer, String message) {
+        writeString(buffer, message);
+    }
+
+    /**
+     * Read an error frame's payload
+     * @param buffer The payload
+     * @return The error message
+     */
+    public static String readError(ByteBuffer buffer) {
+        return readString(buffer);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to encode");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void writeDecimal(ByteBuffer buffer, BigDecimal value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        if (value.scale() < Byte.MIN_VALUE || value.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount scale " + value.scale() + " is out of range");
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (unscaled.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount is too large to encode");
+        }
+        buffer.put((byte) unscaled.length);
+        buffer.put(unscaled);
+        buffer.put((byte) value.scale());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int length = buffer.get();
+        if (length == 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), buffer.get());
+    }
+
+    private static void writeTimestamp(ByteBuffer buffer, LocalDateTime value) {
+        if (value == null) {
+            buffer.putLong(Long.MIN_VALUE);
+            buffer.putInt(0);
+            return;
+        }
+        buffer.putLong(value.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(value.getNano());
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer buffer) {
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        return epochSecond == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+    private static short toCount(int count) {
+        if (count > 0xFFFF) {
+            throw new IllegalArgumentException("At most 65535 entries fit in one frame");
+        }
+        return (short) count;
+    }
+}
@@ -0,0 +1,49 @@
+package com.banking.util;
+
+import com.banking.model.Transaction;
+
+public class TransactionCsv {
+    
+    public static final String HEADER = "id,cardNumber,type,amount,timestamp,status,message,balanceAfter\n";
+    
+    /**
+     * Convert a transaction to a CSV line without the trailing newline
+     * @param transaction The transaction to convert
+     * @return The CSV line
+     */
+    public static String toLine(Transaction transaction) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(transaction.getId()).append(',')
+            .append(transaction.getCardNumber()).append(',')
+            .append(transaction.getType()).append(',')
+            .append(transaction.getAmount().toPlainString()).append(',')
+            .append(transaction.getTimestamp()).append(',')
+            .append(transaction.getStatus()).append(',');
+        appendQuoted(line, transaction.getMessage());
+        line.append(',');
+        if (transaction.getBalanceAfter() != null) {
+            line.append(transaction.getBalanceAfter().toPlainString());
+        }
+        return line.toString();
+    }
+    
+    /**
+     * Append a value as a quoted CSV field, doubling embedded quotes
+     * @param line The line to append to
+     * @param value The value to append, may be null
+     */
+    private static void appendQuoted(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
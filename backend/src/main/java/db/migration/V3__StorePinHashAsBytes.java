@@ -0,0 +1,55 @@
+package db.migration;
+
+import com.banking.util.PinHasher;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Convert cards.pin_hash from a 64-character hex string to the raw 32-byte hash.
+ *
+ * Existing hashes are decoded row by row with PinHasher.fromHex so the same
+ * migration works for any database, then the hex column is replaced.
+ */
+public class V3__StorePinHashAsBytes extends BaseJavaMigration {
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE cards ADD COLUMN pin_hash_bytes VARBINARY(32)");
+        }
+        
+        try (Statement select = connection.createStatement();
+             ResultSet cards = select.executeQuery("SELECT id, pin_hash FROM cards");
+             PreparedStatement update = connection.prepareStatement(
+                 "UPDATE cards SET pin_hash_bytes = ? WHERE id = ?")) {
+            int pending = 0;
+            while (cards.next()) {
+                update.setBytes(1, PinHasher.fromHex(cards.getString("pin_hash")));
+                update.setLong(2, cards.getLong("id"));
+                update.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+        
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE cards DROP COLUMN pin_hash");
+            statement.execute("ALTER TABLE cards ALTER COLUMN pin_hash_bytes RENAME TO pin_hash");
+            statement.execute("ALTER TABLE cards ALTER COLUMN pin_hash SET NOT NULL");
+        }
+    }
+}
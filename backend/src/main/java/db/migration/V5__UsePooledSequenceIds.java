@@ -0,0 +1,43 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Replace the identity columns of cards, transactions and users with sequences
+ * incremented in blocks of 50, so Hibernate can assign ids without a round trip
+ * per insert and batch the inserts.
+ *
+ * Each sequence value reserves the block of ids ending at it, so a sequence
+ * starts one block above the highest existing id.
+ */
+public class V5__UsePooledSequenceIds extends BaseJavaMigration {
+    
+    private static final int ALLOCATION_SIZE = 50;
+    
+    private static final String[] TABLES = {"cards", "transactions", "users"};
+    
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                long maxId;
+                try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+                    result.next();
+                    maxId = result.getLong(1);
+                }
+                
+                statement.execute("CREATE SEQUENCE " + table + "_seq START WITH " + (maxId + ALLOCATION_SIZE)
+                    + " INCREMENT BY " + ALLOCATION_SIZE);
+                // Inserts must now take their id from the sequence
+                statement.execute("ALTER TABLE " + table + " ALTER COLUMN id DROP IDENTITY");
+            }
+        }
+    }
+}
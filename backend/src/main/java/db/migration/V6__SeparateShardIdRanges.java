@@ -0,0 +1,49 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Give every database shard its own range of ids, so rows keep their id when
+ * the rebalance tool moves them to another shard and ids stay unique across
+ * the merged admin views.
+ *
+ * Shard n allocates ids from n * 10^12 upwards; the range stays below 2^53 so
+ * ids are exact as JavaScript numbers. Shard 0, which is also the only
+ * database when sharding is off, keeps its sequences unchanged.
+ */
+public class V6__SeparateShardIdRanges extends BaseJavaMigration {
+    
+    public static final long IDS_PER_SHARD = 1_000_000_000_000L;
+    
+    private static final int ALLOCATION_SIZE = 50;
+    
+    private static final String[] TABLES = {"cards", "transactions", "users"};
+    
+    @Override
+    public void migrate(Context context) throws Exception {
+        int shard = Integer.parseInt(context.getConfiguration().getPlaceholders().getOrDefault("shard", "0"));
+        if (shard == 0) {
+            return;
+        }
+        Connection connection = context.getConnection();
+        
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                long maxId;
+                try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+                    result.next();
+                    maxId = result.getLong(1);
+                }
+                
+                // Each sequence value reserves the block of ids ending at it, as in V5
+                long start = Math.max(shard * IDS_PER_SHARD, maxId) + ALLOCATION_SIZE;
+                statement.execute("ALTER SEQUENCE " + table + "_seq RESTART WITH " + start);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+-- Baseline schema, matching the JPA entities in com.banking.model
+
+CREATE TABLE cards (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    card_number VARCHAR(16) NOT NULL,
+    pin_hash VARCHAR(255) NOT NULL,
+    balance NUMERIC(10, 2) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_cards_card_number UNIQUE (card_number)
+);
+
+CREATE TABLE transactions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    card_number VARCHAR(16) NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    amount NUMERIC(10, 2) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    message VARCHAR(500),
+    balance_after NUMERIC(10, 2),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    username VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    role VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
@@ -0,0 +1,8 @@
+-- Customer history: WHERE card_number = ? ORDER BY timestamp DESC
+CREATE INDEX idx_transactions_card_timestamp ON transactions (card_number, timestamp DESC, id DESC);
+
+-- Admin status views: WHERE status = ? ORDER BY timestamp DESC
+CREATE INDEX idx_transactions_status_timestamp ON transactions (status, timestamp DESC, id DESC);
+
+-- Admin keyset pages without a status filter: ORDER BY timestamp DESC, id DESC
+CREATE INDEX idx_transactions_timestamp ON transactions (timestamp DESC, id DESC);
@@ -0,0 +1,12 @@
+-- Stored responses for Idempotency-Key retries, purged once expired
+
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(128) NOT NULL,
+    request_fingerprint VARCHAR(100) NOT NULL,
+    response VARCHAR(4000) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,113 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionRequest;
+import com.banking.dto.TransactionResponse;
+import com.banking.event.CardsImportedEvent;
+import com.banking.model.Card;
+import com.banking.model.Transaction;
+import com.banking.repository.CardRepository;
+import com.banking.repository.TransactionRepository;
+import com.banking.util.PinHasher;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Withdrawals racing on one card must be applied one at a time: the card lane
+ * is what keeps two of them from both passing the balance check.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "spring.datasource.url=jdbc:h2:mem:lane-concurrency-test",
+    "spring.jpa.show-sql=false",
+    "logging.level.com.banking=INFO",
+    "logging.level.org.springframework.security=INFO"
+})
+class InProcessProcessorClientConcurrencyTest {
+
+    private static final String CARD_NUMBER = "4111000000009999";
+    private static final String PIN = "4321";
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("100.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("7.00");
+    private static final int THREADS = 16;
+    private static final int WITHDRAWALS_PER_THREAD = 10;
+
+    @Autowired
+    private InProcessProcessorClient processorClient;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardedLedger shardedLedger;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void concurrentWithdrawalsNeverOverdrawTheCard() throws Exception {
+        Card card = new Card(CARD_NUMBER, PinHasher.hashPin(PIN), OPENING_BALANCE);
+        shardRouter.onCard(CARD_NUMBER, () -> cardRepository.save(card));
+        eventPublisher.publishEvent(new CardsImportedEvent(Map.of(CARD_NUMBER, OPENING_BALANCE)));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<TransactionResponse>>> results = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                List<TransactionResponse> responses = new ArrayList<>();
+                for (int i = 0; i < WITHDRAWALS_PER_THREAD; i++) {
+                    responses.add(processorClient.process(new TransactionRequest(CARD_NUMBER, PIN, AMOUNT, "withdraw")));
+                }
+                return responses;
+            }));
+        }
+        start.countDown();
+
+        int approved = 0;
+        for (Future<List<TransactionResponse>> result : results) {
+            for (TransactionResponse response : result.get(60, TimeUnit.SECONDS)) {
+                if (response.isSuccess()) {
+                    approved++;
+                    assertTrue(response.getBalanceAfter().signum() >= 0, "balance after " + response.getBalanceAfter());
+                } else {
+                    assertEquals(TransactionProcessorService.INSUFFICIENT_BALANCE_MESSAGE, response.getMessage());
+                }
+            }
+        }
+        pool.shutdown();
+
+        BigDecimal expected = OPENING_BALANCE.subtract(AMOUNT.multiply(BigDecimal.valueOf(approved)));
+        BigDecimal balance = shardedLedger.findCard(CARD_NUMBER).orElseThrow().getBalance();
+        assertEquals(0, expected.compareTo(balance), "expected " + expected + " but was " + balance);
+        assertTrue(balance.signum() >= 0);
+        // Every withdrawal that fits was approved, none beyond
+        assertEquals(OPENING_BALANCE.divideToIntegralValue(AMOUNT).intValue(), approved);
+
+        long recorded = shardRouter.onCard(CARD_NUMBER, () -> transactionRepository.findByCardNumberOrderByTimestampDesc(CARD_NUMBER))
+            .stream()
+            .filter(transaction -> transaction.getStatus() == Transaction.TransactionStatus.SUCCESS)
+            .count();
+        assertEquals(approved, recorded);
+    }
+}
@@ -0,0 +1,265 @@
+package com.banking.service;
+
+import com.banking.BankingApplication;
+import com.banking.dto.CardPage;
+import com.banking.dto.TransactionFilter;
+import com.banking.dto.TransactionPage;
+import com.banking.dto.TransactionRequest;
+import com.banking.event.CardsImportedEvent;
+import com.banking.model.Card;
+import com.banking.model.Transaction;
+import com.banking.repository.CardRepository;
+import com.banking.repository.TransactionRepository;
+import com.banking.util.PinHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the application on several in-memory H2 shards. Each test gets its own
+ * databases, which outlive a context so the same rows can be reopened with a
+ * different shard count.
+ */
+class ShardedLedgerIntegrationTest {
+
+    private static final String PIN = "1234";
+    private static final int CARDS = 40;
+    private static final int TRANSACTIONS_PER_CARD = 3;
+    private static final int PAGE_SIZE = 7;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    private String urlTemplate;
+
+    @BeforeEach
+    void createDatabases() {
+        urlTemplate = "jdbc:h2:mem:shard-test-" + UUID.randomUUID() + "-{shard};DB_CLOSE_DELAY=-1";
+    }
+
+    @AfterEach
+    void closeContexts() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+        InterruptingJdbcTemplate.CARD_DELETES_UNTIL_FAILURE.set(0);
+    }
+
+    @Test
+    void keepsCardAndItsTransactionsOnTheOwningShard() {
+        ConfigurableApplicationContext context = start(2);
+        ShardRouter router = context.getBean(ShardRouter.class);
+        CardRepository cards = context.getBean(CardRepository.class);
+        TransactionRepository transactions = context.getBean(TransactionRepository.class);
+
+        for (String cardNumber : seed(context)) {
+            int owner = router.shardFor(cardNumber);
+            for (int shard = 0; shard < 2; shard++) {
+                boolean found = router.onShard(shard, () -> cards.findByCardNumber(cardNumber)).isPresent();
+                int recorded = router.onShard(shard, () -> transactions.findByCardNumberOrderByTimestampDesc(cardNumber)).size();
+                assertEquals(shard == owner, found, cardNumber + " on shard " + shard);
+                assertEquals(shard == owner ? TRANSACTIONS_PER_CARD : 0, recorded, cardNumber + " on shard " + shard);
+            }
+        }
+        for (long count : router.onAllShards(shard -> transactions.count())) {
+            assertTrue(count > 0, "every shard holds transactions");
+        }
+    }
+
+    @Test
+    void continuesMergedPageWithItsCursor() {
+        ConfigurableApplicationContext context = start(2);
+        seed(context);
+        ShardedLedger ledger = context.getBean(ShardedLedger.class);
+        List<Long> newestFirst = transactionIds(context, Comparator
+            .comparing(Transaction::getTimestamp)
+            .thenComparing(Transaction::getId)
+            .reversed());
+
+        TransactionPage first = ledger.findPage(new TransactionFilter(), null, PAGE_SIZE);
+        assertEquals(newestFirst.subList(0, PAGE_SIZE), ids(first.getItems()));
+        assertNotNull(first.getNextCursor());
+
+        TransactionPage second = ledger.findPage(new TransactionFilter(), first.getNextCursor(), PAGE_SIZE);
+        assertEquals(newestFirst.subList(PAGE_SIZE, 2 * PAGE_SIZE), ids(second.getItems()));
+
+        // Following the cursors to the end visits every transaction once
+        List<Long> visited = new ArrayList<>(ids(first.getItems()));
+        TransactionPage page = first;
+        while (page.getNextCursor() != null) {
+            page = ledger.findPage(new TransactionFilter(), page.getNextCursor(), PAGE_SIZE);
+            visited.addAll(ids(page.getItems()));
+        }
+        assertEquals(newestFirst, visited);
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void pagesCardsOfEveryShardById() {
+        ConfigurableApplicationContext context = start(2);
+        seed(context);
+        ShardedLedger ledger = context.getBean(ShardedLedger.class);
+
+        List<Long> visited = new ArrayList<>();
+        CardPage page = ledger.findCardPage(null, PAGE_SIZE);
+        visited.addAll(page.getItems().stream().map(Card::getId).collect(Collectors.toList()));
+        while (page.getNextCursor() != null) {
+            assertEquals(PAGE_SIZE, page.getItems().size());
+            page = ledger.findCardPage(page.getNextCursor(), PAGE_SIZE);
+            visited.addAll(page.getItems().stream().map(Card::getId).collect(Collectors.toList()));
+        }
+        assertEquals(cardIds(context), visited);
+    }
+
+    @Test
+    void rerunOfInterruptedRebalanceKeepsEveryRow() {
+        ConfigurableApplicationContext twoShards = start(2);
+        seed(twoShards);
+        Map<String, BigDecimal> balances = balances(twoShards);
+        List<Long> cardIds = cardIds(twoShards);
+        List<Long> transactionIds = transactionIds(twoShards, Comparator.comparing(Transaction::getId));
+        twoShards.close();
+
+        ConfigurableApplicationContext threeShards = start(3, "--banking.sharding.rebalance-batch-size=4");
+        ShardRebalanceService rebalanceService = threeShards.getBean(ShardRebalanceService.class);
+
+        // Stop the second move after its cards reached the new shard, before they left the old one
+        InterruptingJdbcTemplate.CARD_DELETES_UNTIL_FAILURE.set(4);
+        assertThrows(IllegalStateException.class, rebalanceService::rebalance);
+        assertTrue(cardIds(threeShards).size() > cardIds.size(), "interrupted move left cards on both shards");
+
+        ShardRebalanceService.RebalanceReport report = rebalanceService.rebalance();
+        assertTrue(report.getCardsMoved() > 0);
+        assertEquals(cardIds, cardIds(threeShards));
+        assertEquals(transactionIds, transactionIds(threeShards, Comparator.comparing(Transaction::getId)));
+        assertEquals(balances, balances(threeShards));
+
+        ShardRouter router = threeShards.getBean(ShardRouter.class);
+        CardRepository cards = threeShards.getBean(CardRepository.class);
+        TransactionRepository transactions = threeShards.getBean(TransactionRepository.class);
+        for (int shard = 0; shard < 3; shard++) {
+            int expected = shard;
+            router.onShard(shard, cards::findAll).forEach(card ->
+                assertEquals(expected, router.shardFor(card.getCardNumber()), card.getCardNumber()));
+            router.onShard(shard, transactions::findAll).forEach(transaction ->
+                assertEquals(expected, router.shardFor(transaction.getCardNumber()), "transaction " + transaction.getId()));
+        }
+    }
+
+    private ConfigurableApplicationContext start(int shards, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+            "--banking.sharding.shards=" + shards,
+            "--banking.sharding.url-template=" + urlTemplate,
+            "--spring.jpa.show-sql=false",
+            "--logging.level.com.banking=INFO",
+            "--logging.level.org.springframework.security=INFO"));
+        arguments.addAll(List.of(args));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BankingApplication.class, InterruptingJdbcConfig.class)
+            .web(WebApplicationType.NONE)
+            .run(arguments.toArray(new String[0]));
+        contexts.add(context);
+        return context;
+    }
+
+    // Creates cards the way the importer does and gives each a top-up and two withdrawals
+    private List<String> seed(ConfigurableApplicationContext context) {
+        ShardRouter router = context.getBean(ShardRouter.class);
+        CardRepository cards = context.getBean(CardRepository.class);
+        ProcessorClient processor = context.getBean(InProcessProcessorClient.class);
+
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card(String.format("4111%012d", i), PinHasher.hashPin(PIN), new BigDecimal("100.00"));
+            router.onCard(card.getCardNumber(), () -> cards.save(card));
+            context.publishEvent(new CardsImportedEvent(Map.of(card.getCardNumber(), card.getBalance())));
+            cardNumbers.add(card.getCardNumber());
+        }
+        for (String cardNumber : cardNumbers) {
+            assertTrue(processor.process(new TransactionRequest(cardNumber, PIN, new BigDecimal("25.00"), "topup")).isSuccess());
+            assertTrue(processor.process(new TransactionRequest(cardNumber, PIN, new BigDecimal("40.00"), "withdraw")).isSuccess());
+            assertTrue(processor.process(new TransactionRequest(cardNumber, PIN, new BigDecimal("5.50"), "withdraw")).isSuccess());
+        }
+        return cardNumbers;
+    }
+
+    private static Map<String, BigDecimal> balances(ConfigurableApplicationContext context) {
+        // toMap fails on a card found on two shards
+        return context.getBean(ShardedLedger.class).findAllBalances().stream()
+            .collect(Collectors.toMap(CardRepository.CardBalance::getCardNumber, CardRepository.CardBalance::getBalance,
+                (first, second) -> { throw new IllegalStateException("Card on two shards"); }, TreeMap::new));
+    }
+
+    private static List<Long> cardIds(ConfigurableApplicationContext context) {
+        CardRepository cards = context.getBean(CardRepository.class);
+        return context.getBean(ShardRouter.class).onAllShards(shard -> cards.findAll()).stream()
+            .flatMap(List::stream)
+            .map(Card::getId)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static List<Long> transactionIds(ConfigurableApplicationContext context, Comparator<Transaction> order) {
+        TransactionRepository transactions = context.getBean(TransactionRepository.class);
+        return context.getBean(ShardRouter.class).onAllShards(shard -> transactions.findAll()).stream()
+            .flatMap(List::stream)
+            .sorted(order)
+            .map(Transaction::getId)
+            .collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Registered as a source of the test contexts only; without a stereotype the application's component scan skips it
+     */
+    static class InterruptingJdbcConfig {
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new InterruptingJdbcTemplate(dataSource);
+        }
+    }
+
+    /**
+     * Fails the n-th card delete. The rebalance deletes the cards of a move on
+     * the new shard and then on the old one, so an even n interrupts a move
+     * after its copy committed.
+     */
+    static class InterruptingJdbcTemplate extends JdbcTemplate {
+
+        static final AtomicInteger CARD_DELETES_UNTIL_FAILURE = new AtomicInteger();
+
+        InterruptingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (sql.startsWith("DELETE FROM cards") && CARD_DELETES_UNTIL_FAILURE.decrementAndGet() == 0) {
+                throw new IllegalStateException("Rebalance interrupted");
+            }
+            return super.update(sql, args);
+        }
+    }
+}
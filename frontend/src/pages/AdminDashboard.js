@@ -9,6 +9,8 @@ import { adminAPI } from '../services/api';
 const AdminDashboard = () => {
   const [transactions, setTransactions] = useState([]);
   const [cards, setCards] = useState([]);
+  const [cardCount, setCardCount] = useState(0);
+  const [stats, setStats] = useState(null);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
   const navigate = useNavigate();
@@ -19,13 +21,17 @@ const AdminDashboard = () => {
       setError('');
       
       // Load real data from backend
-      const [transactionsResponse, cardsResponse] = await Promise.all([
+      const [transactionsResponse, cardsResponse, cardCountResponse, statsResponse] = await Promise.all([
         adminAPI.getAllTransactions(),
-        adminAPI.getAllCards()
+        adminAPI.getAllCards(),
+        adminAPI.getCardCount(),
+        adminAPI.getStats()
       ]);
 
       setTransactions(transactionsResponse.data);
       setCards(cardsResponse.data);
+      setCardCount(cardCountResponse.data);
+      setStats(statsResponse.data);
       setLoading(false);
     } catch (err) {
       console.error('Error loading admin data:', err);
@@ -74,14 +80,17 @@ const AdminDashboard = () => {
     return new Date(dateString).toLocaleString();
   };
 
-  // Calculate statistics
-  const totalTransactions = transactions.length;
-  const successfulTransactions = transactions.filter(t => t.status === 'SUCCESS').length;
-  const totalCards = cards.length;
-  const withdrawalTransactions = transactions.filter(t => t.type === 'WITHDRAW').length;
-  const successfulWithdrawals = transactions.filter(t => t.type === 'WITHDRAW' && t.status === 'SUCCESS').length;
-  const topupTransactions = transactions.filter(t => t.type === 'TOPUP').length;
-  const successfulTopups = transactions.filter(t => t.type === 'TOPUP' && t.status === 'SUCCESS').length;
+  // Statistics come from the server-side aggregates, not from the listed transactions
+  const totals = stats ? stats.totals : null;
+  const countOf = (group) => (group ? group.count : 0);
+  const totalTransactions = countOf(totals);
+  const successfulTransactions = totals ? countOf(totals.byStatus.SUCCESS) : 0;
+  // The card list is capped, the count covers every card
+  const totalCards = cardCount;
+  const withdrawalTransactions = totals ? countOf(totals.byType.WITHDRAW) : 0;
+  const successfulWithdrawals = totals ? countOf((totals.byTypeAndStatus.WITHDRAW || {}).SUCCESS) : 0;
+  const topupTransactions = totals ? countOf(totals.byType.TOPUP) : 0;
+  const successfulTopups = totals ? countOf((totals.byTypeAndStatus.TOPUP || {}).SUCCESS) : 0;
 
   if (loading) {
     return (
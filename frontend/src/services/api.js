@@ -26,8 +26,14 @@ export const adminAPI = {
   getAllCards: () => 
     api.get('/admin/cards'),
   
+  getCardCount: () => 
+    api.get('/admin/cards/count'),
+  
   getTransactionsByStatus: (status) => 
     api.get(`/admin/transactions/status/${status}`),
+  
+  getStats: () => 
+    api.get('/admin/stats'),
 };
 
 // Customer API